@@ -54,6 +54,13 @@ runs {
         programArgument("--nogui")
     }
 
+    // Headless server that scans EMC once, writes config/combinedpe/precomputed/emc_<fingerprint>.bin and stops
+    create("precomputeEmc") {
+        runType("server")
+        systemProperty("combinedpe.precompute", "true")
+        programArgument("--nogui")
+    }
+
     create("gameTestServer") {
         systemProperty("forge.enabledGameTestNamespaces", project.property("mod_id") as String)
     }
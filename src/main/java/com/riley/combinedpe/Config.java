@@ -1,15 +1,20 @@
 package com.riley.combinedpe;
 
+import com.riley.combinedpe.emc.EMCReportGenerator;
+import com.riley.combinedpe.emc.EMCRules;
+import com.riley.combinedpe.emc.ItemRuleSet;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.fml.event.config.ModConfigEvent;
 import net.neoforged.neoforge.common.ModConfigSpec;
 
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Configuration handler for CombinedPE
  */
+@EventBusSubscriber(modid = CombinedPE.MOD_ID, bus = EventBusSubscriber.Bus.MOD)
 public class Config {
 
     private static final ModConfigSpec.Builder BUILDER = new ModConfigSpec.Builder();
@@ -18,11 +23,27 @@ public class Config {
     public static final ModConfigSpec.BooleanValue DYNAMIC_EMC_ENABLED;
     public static final ModConfigSpec.BooleanValue SCAN_ON_WORLD_LOAD;
     public static final ModConfigSpec.BooleanValue GENERATE_REPORT;
+    public static final ModConfigSpec.ConfigValue<List<? extends String>> REPORT_FORMATS;
+    public static final ModConfigSpec.IntValue REPORT_RETENTION;
+    public static final ModConfigSpec.BooleanValue EXPORT_CACHE_JSON;
+    public static final ModConfigSpec.ConfigValue<String> SHARED_CACHE_DIR;
+    public static final ModConfigSpec.IntValue SHARED_CACHE_MAX_AGE_DAYS;
 
     // Inference Rules
     public static final ModConfigSpec.DoubleValue CRAFTING_MULTIPLIER;
     public static final ModConfigSpec.DoubleValue SMELTING_MULTIPLIER;
     public static final ModConfigSpec.DoubleValue SMITHING_MULTIPLIER;
+    public static final ModConfigSpec.ConfigValue<List<? extends String>> RECIPE_TYPE_MULTIPLIERS;
+    public static final ModConfigSpec.ConfigValue<List<? extends String>> IGNORED_RECIPE_TYPES;
+    public static final ModConfigSpec.ConfigValue<String> INGREDIENT_ALTERNATIVES;
+    public static final ModConfigSpec.BooleanValue COMPARE_FIRST_MATCH;
+
+    // Scan Performance
+    public static final ModConfigSpec.BooleanValue PARALLEL_SCAN;
+    public static final ModConfigSpec.IntValue SCAN_THREADS;
+    public static final ModConfigSpec.BooleanValue INCREMENTAL_SCAN;
+    public static final ModConfigSpec.BooleanValue BACKGROUND_SCAN;
+    public static final ModConfigSpec.IntValue TICK_BUDGET_MS;
 
     // EMC Overrides and Blacklist
     public static final ModConfigSpec.ConfigValue<List<? extends String>> EMC_OVERRIDE_ENTRIES;
@@ -43,6 +64,42 @@ public class Config {
                 .comment("Generate a report of assigned EMC values")
                 .define("generate_report", true);
 
+        REPORT_FORMATS = BUILDER
+                .comment(
+                    "Report formats to write (config/combinedpe/reports):",
+                    "  \"text\"   - human-readable report (.txt)",
+                    "  \"csv\"    - item,emc,value,source rows (.csv)",
+                    "  \"ndjson\" - gzip-compressed newline-delimited JSON, one object per line (.ndjson.gz)"
+                )
+                .defineListAllowEmpty(
+                    "report_formats",
+                    () -> Arrays.asList("text"),
+                    obj -> obj instanceof String format && EMCReportGenerator.Format.byName(format) != null
+                );
+
+        REPORT_RETENTION = BUILDER
+                .comment("Number of most recent reports to keep (0 = keep all)")
+                .defineInRange("report_retention", 10, 0, 1000);
+
+        EXPORT_CACHE_JSON = BUILDER
+                .comment(
+                    "Also write the EMC cache as human-readable JSON (config/combinedpe/emc_cache.json)",
+                    "For inspection only - the cache is always loaded from the binary emc_cache.bin"
+                )
+                .define("export_cache_json", false);
+
+        SHARED_CACHE_DIR = BUILDER
+                .comment(
+                    "Cache directory shared by every server instance on this host (empty = disabled)",
+                    "Entries are named by pack fingerprint, so instances of the same pack reuse each other's scans",
+                    "and instances of different packs never mix. The local cache is still written as well."
+                )
+                .define("shared_cache_dir", "");
+
+        SHARED_CACHE_MAX_AGE_DAYS = BUILDER
+                .comment("Delete shared cache entries not used for this many days (0 = keep forever)")
+                .defineInRange("shared_cache_max_age_days", 30, 0, 3650);
+
         BUILDER.pop();
 
         BUILDER.comment("Inference Rules for EMC Calculation").push("inference_rules");
@@ -59,6 +116,80 @@ public class Config {
                 .comment("Multiplier for items upgraded via smithing")
                 .defineInRange("smithing_multiplier", 1.0, 0.1, 10.0);
 
+        RECIPE_TYPE_MULTIPLIERS = BUILDER
+                .comment(
+                    "Multipliers per recipe type, in the form 'recipe_type=multiplier'",
+                    "Recipe types not listed use the multipliers above (crafting_multiplier for modded types)",
+                    "Example: [\"mekanism:crushing=1.0\", \"create:pressing=1.05\"]"
+                )
+                .defineListAllowEmpty(
+                    "recipe_type_multipliers",
+                    () -> Arrays.asList(),
+                    obj -> obj instanceof String
+                );
+
+        IGNORED_RECIPE_TYPES = BUILDER
+                .comment(
+                    "Recipe types left out of EMC calculation",
+                    "Every other registered recipe type is read, modded ones through their ingredients and result",
+                    "Example: [\"create:sandpaper_polishing\"]"
+                )
+                .defineListAllowEmpty(
+                    "ignored_recipe_types",
+                    () -> Arrays.asList(),
+                    obj -> obj instanceof String
+                );
+
+        INGREDIENT_ALTERNATIVES = BUILDER
+                .comment(
+                    "How ingredients that accept several items (tags, alternatives) are valued:",
+                    "'cheapest' uses the cheapest accepted item, 'first' the first one listed (the old behaviour,",
+                    "which depends on registry order and often inflates values)"
+                )
+                .defineInList("ingredient_alternatives", "cheapest", Arrays.asList("cheapest", "first"));
+
+        COMPARE_FIRST_MATCH = BUILDER
+                .comment(
+                    "On full scans in 'cheapest' mode, also solve in 'first' mode and report how many values differ",
+                    "Costs one extra recipe graph solve, so it is off by default"
+                )
+                .define("compare_first_match", false);
+
+        BUILDER.pop();
+
+        BUILDER.comment("Scan Performance Settings").push("performance");
+
+        PARALLEL_SCAN = BUILDER
+                .comment(
+                    "Extract recipes on a fork-join pool of worker threads while the recipe index is built",
+                    "Results are identical to single-threaded extraction"
+                )
+                .define("parallel_scan", true);
+
+        SCAN_THREADS = BUILDER
+                .comment("Worker threads for parallel recipe extraction (0 = one per available processor)")
+                .defineInRange("scan_threads", 0, 0, 256);
+
+        INCREMENTAL_SCAN = BUILDER
+                .comment(
+                    "On datapack reload, re-solve only the items affected by changed recipes or ProjectE values",
+                    "The rescan command always solves the full recipe graph"
+                )
+                .define("incremental_scan", true);
+
+        BACKGROUND_SCAN = BUILDER
+                .comment(
+                    "Scan on a background thread (default)",
+                    "Disable if other mods are not safe to read off the server thread: the scan then runs",
+                    "on the server thread in slices of tick_budget_ms per tick (recipe indexing, the recipe graph",
+                    "build and solve too)"
+                )
+                .define("background_scan", true);
+
+        TICK_BUDGET_MS = BUILDER
+                .comment("Milliseconds per server tick a server-thread scan may use (a tick is 50ms)")
+                .defineInRange("tick_budget_ms", 10, 1, 40);
+
         BUILDER.pop();
 
         BUILDER.comment("EMC Value Overrides").push("emc_overrides");
@@ -66,11 +197,18 @@ public class Config {
         EMC_OVERRIDE_ENTRIES = BUILDER
                 .comment(
                     "Custom EMC values for specific items",
-                    "Format: \"modid:itemname=emc_value\"",
+                    "Format: \"rule=emc_value\", where rule is one of:",
+                    "  modid:itemname  - a single item",
+                    "  modid:*         - every item of a mod",
+                    "  #namespace:tag  - every item in an item tag",
+                    "  *:*_ore         - a glob over item IDs ('*' any characters, '?' one character)",
+                    "  /regex/         - a regular expression over item IDs",
+                    "When several rules match an item: exact ID, then tag, then glob/regex, then mod wins",
                     "Examples:",
                     "  \"minecraft:dirt=1\"",
                     "  \"minecraft:diamond=8192\"",
-                    "These values override both recipe-based and tag-based calculations"
+                    "  \"#c:ingots/tin=256\"",
+                    "These values override ProjectE's own values as well as recipe-based and tag-based calculations"
                 )
                 .defineListAllowEmpty(
                     "overrides",
@@ -85,7 +223,7 @@ public class Config {
         BLACKLISTED_ITEMS = BUILDER
                 .comment(
                     "Items that should never receive EMC values",
-                    "Format: \"modid:itemname\"",
+                    "Format: same rules as overrides, without a value (\"modid:itemname\", \"modid:*\", \"#tag\", glob or /regex/)",
                     "Examples:",
                     "  \"minecraft:bedrock\"",
                     "  \"minecraft:command_block\"",
@@ -104,46 +242,34 @@ public class Config {
 
     public static final ModConfigSpec SPEC = BUILDER.build();
 
+    // Override and blacklist rules, compiled once per config load
+    private static volatile EMCRules rules;
+
+    @SubscribeEvent
+    public static void onConfigLoad(ModConfigEvent event) {
+        if (event.getConfig().getSpec() == SPEC && !(event instanceof ModConfigEvent.Unloading)) {
+            rules = EMCRules.compile(EMC_OVERRIDE_ENTRIES.get(), BLACKLISTED_ITEMS.get());
+        }
+    }
+
     /**
-     * Parse EMC override entries into a map
-     * @return Map of item ID to EMC value
+     * Get the compiled override and blacklist rules
      */
-    public static Map<String, Long> getEMCOverrides() {
-        Map<String, Long> overrides = new HashMap<>();
-
-        for (String entry : EMC_OVERRIDE_ENTRIES.get()) {
-            if (entry == null || entry.trim().isEmpty()) {
-                continue;
-            }
-
-            // Parse format: "modid:itemname=emc_value"
-            String[] parts = entry.split("=", 2);
-            if (parts.length != 2) {
-                CombinedPE.LOGGER.warn("Invalid EMC override format (expected 'item=value'): {}", entry);
-                continue;
-            }
-
-            String itemId = parts[0].trim();
-            String valueStr = parts[1].trim();
-
-            try {
-                long emcValue = Long.parseLong(valueStr);
-                overrides.put(itemId, emcValue);
-                CombinedPE.LOGGER.debug("Loaded EMC override: {} = {}", itemId, emcValue);
-            } catch (NumberFormatException e) {
-                CombinedPE.LOGGER.warn("Invalid EMC value for {}: {}", itemId, valueStr);
-            }
+    public static EMCRules getRules() {
+        EMCRules compiled = rules;
+        if (compiled == null) {
+            compiled = EMCRules.compile(EMC_OVERRIDE_ENTRIES.get(), BLACKLISTED_ITEMS.get());
+            rules = compiled;
         }
-
-        return overrides;
+        return compiled;
     }
 
     /**
-     * Check if an item is blacklisted
+     * Check if an item is blacklisted (tag rules are only applied during scans)
      * @param itemId The item's resource location as string (e.g., "minecraft:dirt")
      * @return true if the item should not receive EMC
      */
     public static boolean isBlacklisted(String itemId) {
-        return BLACKLISTED_ITEMS.get().contains(itemId);
+        return getRules().getBlacklist().match(itemId) != ItemRuleSet.NO_MATCH;
     }
 }
@@ -1,11 +1,15 @@
 package com.riley.combinedpe.command;
 
 import com.mojang.brigadier.CommandDispatcher;
-import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.arguments.LongArgumentType;
 import com.mojang.brigadier.context.CommandContext;
 import com.riley.combinedpe.CombinedPE;
 import com.riley.combinedpe.emc.DynamicEMCMapper;
 import com.riley.combinedpe.emc.EMCCache;
+import com.riley.combinedpe.emc.EMCProvenance;
+import com.riley.combinedpe.emc.EMCScanCoordinator;
+import com.riley.combinedpe.emc.RuntimeOverrides;
+import com.riley.combinedpe.emc.ScanProfiler;
 import com.riley.combinedpe.integration.projecte.ProjectECompat;
 import net.minecraft.commands.CommandBuildContext;
 import net.minecraft.commands.CommandSourceStack;
@@ -17,17 +21,25 @@ import net.minecraft.network.chat.Component;
 import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
 
+import java.util.List;
+
 /**
  * Commands for CombinedPE mod
  *
  * Commands:
  * - /combinedpe rescan - Force a complete EMC re-scan
- * - /combinedpe setemc <item> <value> - Manually set EMC for an item
+ * - /combinedpe setemc <item> <value> - Manually set EMC (at least 1) for an item (saved as a runtime override)
+ * - /combinedpe clearemc <item> - Remove an item's runtime override
  * - /combinedpe getemc [item] - Get EMC value for an item (or held item)
  * - /combinedpe clearcache - Clear the EMC cache
+ * - /combinedpe scanstats - Show where the last EMC scan spent its time
+ * - /combinedpe explain <item> - Show how an item's EMC value was derived
  */
 public class CombinedPECommand {
 
+    // Mods and items listed by /combinedpe scanstats (the report's profile lists more)
+    private static final int SCAN_STATS_LIMIT = 5;
+
     public static void register(CommandDispatcher<CommandSourceStack> dispatcher, CommandBuildContext buildContext) {
         dispatcher.register(
             Commands.literal("combinedpe")
@@ -37,11 +49,16 @@ public class CombinedPECommand {
                 )
                 .then(Commands.literal("setemc")
                     .then(Commands.argument("item", ItemArgument.item(buildContext))
-                        .then(Commands.argument("value", IntegerArgumentType.integer(0))
+                        .then(Commands.argument("value", LongArgumentType.longArg(1))
                             .executes(CombinedPECommand::setEMC)
                         )
                     )
                 )
+                .then(Commands.literal("clearemc")
+                    .then(Commands.argument("item", ItemArgument.item(buildContext))
+                        .executes(CombinedPECommand::clearEMC)
+                    )
+                )
                 .then(Commands.literal("getemc")
                     .executes(CombinedPECommand::getEMCHeld)
                     .then(Commands.argument("item", ItemArgument.item(buildContext))
@@ -51,6 +68,14 @@ public class CombinedPECommand {
                 .then(Commands.literal("clearcache")
                     .executes(CombinedPECommand::clearCache)
                 )
+                .then(Commands.literal("scanstats")
+                    .executes(CombinedPECommand::scanStats)
+                )
+                .then(Commands.literal("explain")
+                    .then(Commands.argument("item", ItemArgument.item(buildContext))
+                        .executes(CombinedPECommand::explain)
+                    )
+                )
         );
     }
 
@@ -70,12 +95,16 @@ public class CombinedPECommand {
         // Invalidate cache
         EMCCache.invalidateCache();
 
-        // Clear current EMC values
-        DynamicEMCMapper.clearCache();
-
-        source.sendSuccess(() -> Component.literal(
-            "EMC cache cleared. Re-scan will occur automatically on next world reload or use /reload"
-        ), true);
+        // Current values stay active until the new scan publishes its results
+        if (EMCScanCoordinator.requestRescan(source.getServer())) {
+            source.sendSuccess(() -> Component.literal(
+                "EMC re-scan started. New values apply to ProjectE on the next /reload"
+            ), true);
+        } else {
+            source.sendSuccess(() -> Component.literal(
+                "An EMC scan is already running. The re-scan will start when it finishes"
+            ), true);
+        }
 
         CombinedPE.LOGGER.info("{} triggered EMC re-scan", source.getTextName());
 
@@ -84,31 +113,27 @@ public class CombinedPECommand {
 
     /**
      * Manually set EMC for an item
+     * The value is saved as a runtime override and applied right away; items whose
+     * recipes use the item are recalculated from the last scan's recipe graph
      */
     private static int setEMC(CommandContext<CommandSourceStack> context) {
         CommandSourceStack source = context.getSource();
 
         try {
             ItemInput itemInput = ItemArgument.getItem(context, "item");
-            int emcValue = IntegerArgumentType.getInteger(context, "value");
+            long emcValue = LongArgumentType.getLong(context, "value");
 
             Item item = itemInput.getItem();
             String itemId = BuiltInRegistries.ITEM.getKey(item).toString();
 
-            // TODO: Store custom EMC value (needs runtime config modification)
-            // For now, just inform user to add to config file
-            source.sendSuccess(() -> Component.literal(
-                "To set EMC for " + itemId + " to " + emcValue + ", add this to your config:"
-            ), false);
-            source.sendSuccess(() -> Component.literal(
-                "  [emc_overrides]"
-            ), false);
-            source.sendSuccess(() -> Component.literal(
-                "  overrides = [\"" + itemId + "=" + emcValue + "\"]"
-            ), false);
-            source.sendSuccess(() -> Component.literal(
-                "Then run /combinedpe rescan"
-            ), false);
+            if (!RuntimeOverrides.set(itemId, emcValue)) {
+                source.sendFailure(Component.literal("Failed to save the EMC override, see the server log"));
+                return 0;
+            }
+
+            CombinedPE.LOGGER.info("{} set EMC override {}={}", source.getTextName(), itemId, emcValue);
+            reportOverrideApplied(source, "Set EMC for " + itemId + " to " + emcValue,
+                EMCScanCoordinator.applyOverride(source.getServer(), item, emcValue));
 
             return 1;
 
@@ -118,6 +143,56 @@ public class CombinedPECommand {
         }
     }
 
+    /**
+     * Remove an item's runtime override
+     */
+    private static int clearEMC(CommandContext<CommandSourceStack> context) {
+        CommandSourceStack source = context.getSource();
+
+        try {
+            Item item = ItemArgument.getItem(context, "item").getItem();
+            String itemId = BuiltInRegistries.ITEM.getKey(item).toString();
+
+            if (!RuntimeOverrides.getAll().containsKey(itemId)) {
+                source.sendFailure(Component.literal(itemId + " has no runtime EMC override"));
+                return 0;
+            }
+            if (!RuntimeOverrides.remove(itemId)) {
+                source.sendFailure(Component.literal("Failed to save the EMC overrides, see the server log"));
+                return 0;
+            }
+
+            CombinedPE.LOGGER.info("{} removed EMC override for {}", source.getTextName(), itemId);
+            reportOverrideApplied(source, "Removed the EMC override for " + itemId,
+                EMCScanCoordinator.applyOverride(source.getServer(), item, -1));
+
+            return 1;
+
+        } catch (Exception e) {
+            source.sendFailure(Component.literal("Failed to clear EMC: " + e.getMessage()));
+            return 0;
+        }
+    }
+
+    /**
+     * Tell the source whether an override change applied right away or needs a scan
+     * Either way, datapacks are reloaded so ProjectE registers the new values (see EMCScanCoordinator)
+     * @param changed Number of changed values, or -1 if a scan was started or queued
+     */
+    private static void reportOverrideApplied(CommandSourceStack source, String message, int changed) {
+        if (changed > 0) {
+            source.sendSuccess(() -> Component.literal(
+                message + " (" + changed + " values updated). Reloading datapacks so ProjectE applies them"
+            ), true);
+        } else if (changed == 0) {
+            source.sendSuccess(() -> Component.literal(message + " (no values changed)"), true);
+        } else {
+            source.sendSuccess(() -> Component.literal(
+                message + ". Recalculating dependent values in the background; ProjectE reloads once they are ready"
+            ), true);
+        }
+    }
+
     /**
      * Get EMC value for held item
      */
@@ -190,7 +265,7 @@ public class CombinedPECommand {
 
         if (EMCCache.invalidateCache()) {
             source.sendSuccess(() -> Component.literal(
-                "EMC cache cleared. Re-scan will occur on next world reload."
+                "EMC cache cleared. Re-scan will occur on next server start or /reload."
             ), true);
             CombinedPE.LOGGER.info("{} cleared EMC cache", source.getTextName());
             return 1;
@@ -201,4 +276,47 @@ public class CombinedPECommand {
             return 0;
         }
     }
+
+    /**
+     * Show the phase timings, slowest mods and slowest items of the running or last scan
+     */
+    private static int scanStats(CommandContext<CommandSourceStack> context) {
+        CommandSourceStack source = context.getSource();
+
+        ScanProfiler profile = DynamicEMCMapper.getProfile();
+        if (profile == null) {
+            source.sendFailure(Component.literal("No EMC scan has run yet"));
+            return 0;
+        }
+
+        String title = DynamicEMCMapper.isScanRunning() ? "EMC scan stats (scan running):" : "EMC scan stats:";
+        source.sendSuccess(() -> Component.literal(title), false);
+        for (String line : profile.describe(SCAN_STATS_LIMIT)) {
+            source.sendSuccess(() -> Component.literal(line), false);
+        }
+        return 1;
+    }
+
+    /**
+     * Show how an item's value was derived, from the recorded provenance (no recalculation)
+     */
+    private static int explain(CommandContext<CommandSourceStack> context) {
+        CommandSourceStack source = context.getSource();
+        Item item = ItemArgument.getItem(context, "item").getItem();
+        String itemId = BuiltInRegistries.ITEM.getKey(item).toString();
+
+        List<String> lines = EMCProvenance.getCurrent().explain(item);
+        if (lines == null) {
+            long emc = ProjectECompat.getEMCValue(item);
+            source.sendSuccess(() -> Component.literal(emc > 0
+                ? itemId + " = " + emc + " EMC (from ProjectE, not calculated by CombinedPE)"
+                : itemId + " has no EMC value"), false);
+            return 0;
+        }
+
+        for (String line : lines) {
+            source.sendSuccess(() -> Component.literal(line), false);
+        }
+        return 1;
+    }
 }
@@ -2,37 +2,88 @@ package com.riley.combinedpe.emc;
 
 import com.riley.combinedpe.CombinedPE;
 import com.riley.combinedpe.Config;
-import com.riley.combinedpe.integration.projecte.ProjectECompat;
 import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.item.Item;
-import net.minecraft.world.item.ItemStack;
-import net.minecraft.world.level.Level;
 import net.neoforged.bus.api.SubscribeEvent;
 import net.neoforged.fml.common.EventBusSubscriber;
-import net.neoforged.neoforge.event.level.LevelEvent;
+import net.neoforged.neoforge.event.server.ServerStoppingEvent;
+import net.neoforged.neoforge.event.tick.ServerTickEvent;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Dynamic EMC mapper - scans and calculates EMC values for modded items
  *
  * Phase 2 implementation (COMPLETE):
- * - Recipe scanner (crafting, smelting, smithing) ✓
+ * - Recipe scanner (every recipe type, through pluggable RecipeExtractors) ✓
  * - Tag-based inference ✓
  * - Configuration overrides and blacklist ✓
  * - Report generation ✓
  * - EMC cache system (fast world loading) ✓
  * - ProjectE registration (CombinedPEMapper via ServiceLoader) ✓
+ * - Parallel recipe extraction on a fork-join pool (RecipeIndex) ✓
+ * - Background scan with progress reporting (server keeps starting while it runs) ✓
+ *
+ * Scans are triggered by {@link EMCScanCoordinator} (server start, datapack reload, rescan command).
+ * Before scanning, values are loaded from the local cache or a precomputed artifact shipped with
+ * the pack ({@link EMCPrecompute}) when one matches the pack fingerprint.
+ * The solved recipe graph of the last scan is kept, so a scan after a datapack reload only
+ * re-solves items downstream of what changed (see {@link RecipeGraphState}).
+ *
+ * Scan threading:
+ * - Server thread: snapshot capture (recipe list, tags, items, rules, config)
+ * - Scan thread: recipe index, fingerprint, cache load, recipe resolution
+ * - Server thread: capture ProjectE's values (they come from its proxy)
+ * - Scan thread: build and solve the recipe graph, scan items, save cache and report
+ * - Server thread again: publish results; ProjectE picks them up on its next reload
+ *
+ * With background_scan disabled, the load runs inline and building, solving and scanning run on
+ * the server thread instead, a few milliseconds per tick (see {@link SlicedScan}); saving still
+ * uses the scan thread.
  */
 @EventBusSubscriber(modid = CombinedPE.MOD_ID)
 public class DynamicEMCMapper {
 
-    private static RecipeEMCCalculator calculator;
-    private static final Map<Item, Double> discoveredEMC = new HashMap<>();
-    private static final Map<Item, String> emcSources = new HashMap<>();
+    // How often a running scan reports progress
+    private static final long PROGRESS_REPORT_INTERVAL_MS = 5000;
+
+    // Progress of the running background scan (null when idle)
+    private static volatile ScanProgress activeScan;
+    private static long lastProgressReport;
+
+    // Running server-thread scan, stepped every tick (null when idle or scanning in the background)
+    private static SlicedScan slicedScan;
+
+    // Bumped when the server stops, so a scan still running for the old server is discarded
+    private static int scanGeneration;
+
+    // Solved recipe graph of the last published scan (server thread only, null before the first scan)
+    private static RecipeGraphState lastGraphState;
+
+    // Items the last published scan blacklisted (server thread only)
+    private static Set<String> lastBlacklist = Set.of();
+
+    // Pack content fingerprint of the last cache load or scan (server thread only, null before the first)
+    private static PackFingerprint lastPackFingerprint;
+
+    /**
+     * Single background thread running scans, one at a time
+     */
+    private static final ExecutorService SCAN_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "CombinedPE-EMC-Scan");
+        thread.setDaemon(true);
+        thread.setContextClassLoader(DynamicEMCMapper.class.getClassLoader());
+        return thread;
+    });
 
     /**
      * Initialize the dynamic EMC system
@@ -43,221 +94,624 @@ public class DynamicEMCMapper {
             return;
         }
 
-        CombinedPE.LOGGER.info("Dynamic EMC mapper initialized - waiting for world load");
+        CombinedPE.LOGGER.info("Dynamic EMC mapper initialized - waiting for server start");
     }
 
     /**
-     * Triggered when a level (world) loads
-     * This is when we scan and calculate EMC values (or load from cache)
+     * Load EMC values from the cache, or scan in the background if there is no valid cache
+     * Called by {@link EMCScanCoordinator} on the server thread, never while a scan is running
+     * @param forceScan Skip the cache and always scan
+     * @return Future completed on the server thread once values are published (or the scan failed)
      */
-    @SubscribeEvent
-    public static void onWorldLoad(LevelEvent.Load event) {
-        if (event.getLevel() instanceof Level level && level.isClientSide()) {
-            // Only run on server side
-            return;
-        }
+    public static CompletableFuture<Void> loadOrScan(MinecraftServer server, boolean forceScan) {
+        ServerLevel level = server.overworld();
+        ScanProfiler profiler = new ScanProfiler();
+        long startTime = System.currentTimeMillis();
+        boolean background = Config.BACKGROUND_SCAN.get();
+
+        // A scan after this load re-solves incrementally if the last graph is still around
+        RecipeGraphState previous = !forceScan && Config.INCREMENTAL_SCAN.get() ? lastGraphState : null;
+
+        // Capture what the load reads from recipes, registries and config; indexing, fingerprinting
+        // and the cache load then work on the capture, off the server thread
+        long captureStart = System.nanoTime();
+        RecipeEMCCalculator calculator = new RecipeEMCCalculator(level, previous, profiler);
+        ScanSnapshot snapshot = ScanSnapshot.capture(calculator);
+        profiler.addPhase(ScanProfiler.Phase.SNAPSHOT, System.nanoTime() - captureStart);
+
+        // A server-thread scan loads inline, so nothing runs behind the server's back
+        Executor loadExecutor = background ? SCAN_EXECUTOR : Runnable::run;
+        int generation = scanGeneration;
+
+        CompletableFuture<Void> published = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(() -> loadCached(snapshot, forceScan, profiler), loadExecutor)
+            .whenCompleteAsync((load, error) -> {
+                if (generation != scanGeneration) {
+                    CombinedPE.LOGGER.info("Discarding EMC load from a previous server session");
+                    published.complete(null);
+                } else if (error != null) {
+                    CombinedPE.LOGGER.error("EMC load failed", error);
+                    notifyOperators(server, "EMC load failed, see the server log");
+                    published.complete(null);
+                } else if (load.values() != null) {
+                    lastPackFingerprint = load.pack();
+                    EMCStore.publish(load.values());
+                    EMCProvenance.publish(load.provenance());
+                    profiler.publish();
+
+                    calculator.getEvents().logSummary();
+                    CombinedPE.LOGGER.info("Successfully loaded {} EMC values from the {}",
+                        load.values().size(), load.origin());
+                    published.complete(null);
+                } else {
+                    lastPackFingerprint = load.pack();
+                    CombinedPE.LOGGER.info("Starting dynamic EMC calculation ({})...",
+                        previous != null ? "incremental" : "full");
+                    startScan(server, snapshot, load.fingerprint(), startTime, profiler)
+                        .whenComplete((result, scanError) -> published.complete(null));
+                }
+            }, server::execute);
+        return published;
+    }
 
-        if (!Config.SCAN_ON_WORLD_LOAD.get()) {
-            CombinedPE.LOGGER.info("World load EMC scan disabled in config");
-            return;
+    /**
+     * Outcome of the cache lookup of a load
+     * @param pack Pack content fingerprint of the load
+     * @param fingerprint Full fingerprint (pack content and config)
+     * @param values Cached or precomputed values, or null if a scan is needed
+     * @param provenance Provenance of the values (null with them)
+     * @param origin Where the values came from, for the log
+     */
+    private record LoadResult(PackFingerprint pack, String fingerprint, EMCStore.Snapshot values,
+                              EMCProvenance provenance, String origin) {}
+
+    /**
+     * Fingerprint the captured pack and look up values for it (scan thread, or inline for a server-thread scan)
+     */
+    private static LoadResult loadCached(ScanSnapshot snapshot, boolean forceScan, ScanProfiler profiler) {
+        // One recipe index per load: the fingerprint hashes it and a scan builds its graph from it
+        RecipeIndex recipeIndex = snapshot.getCalculator().getRecipeIndex();
+
+        // Fingerprint the pack so a cache from different mods, recipes, tags or config is not reused
+        long fingerprintStart = System.nanoTime();
+        PackFingerprint pack = PackFingerprint.compute(recipeIndex, snapshot.getTagIndex());
+        String fingerprint = pack.withConfig(snapshot.getConfigHash());
+        profiler.addPhase(ScanProfiler.Phase.FINGERPRINT, System.nanoTime() - fingerprintStart);
+        CombinedPE.LOGGER.info("Pack fingerprint: {}", fingerprint);
+
+        if (!forceScan) {
+            long cacheStart = System.nanoTime();
+            EMCStore.Snapshot cached = EMCCache.load(fingerprint);
+            if (cached != null && !cached.isEmpty()) {
+                EMCProvenance provenance = EMCProvenance.load(fingerprint);
+                provenance = provenance != null ? provenance : EMCProvenance.build(null, cached);
+                profiler.addPhase(ScanProfiler.Phase.CACHE_LOAD, System.nanoTime() - cacheStart);
+                return new LoadResult(pack, fingerprint, cached, provenance, "cache");
+            }
+
+            // A fresh server of a pack built with a precompute run ships the values for its fingerprint
+            EMCStore.Snapshot precomputed = EMCPrecompute.load(fingerprint);
+            if (precomputed != null && !precomputed.isEmpty()) {
+                EMCProvenance provenance = EMCProvenance.build(null, precomputed);
+                profiler.addPhase(ScanProfiler.Phase.CACHE_LOAD, System.nanoTime() - cacheStart);
+                return new LoadResult(pack, fingerprint, precomputed, provenance, "precomputed values shipped with the pack");
+            }
+            profiler.addPhase(ScanProfiler.Phase.CACHE_LOAD, System.nanoTime() - cacheStart);
         }
+        return new LoadResult(pack, fingerprint, null, null, null);
+    }
 
-        if (!ProjectECompat.isProjectELoaded()) {
-            CombinedPE.LOGGER.warn("ProjectE not loaded, skipping EMC calculation");
-            return;
+    /**
+     * Build, solve and scan the captured snapshot on the scan thread (or in slices on the server thread)
+     * Only the ProjectE value capture, between the graph build and the solve, returns to the server thread.
+     */
+    private static CompletableFuture<Void> startScan(MinecraftServer server, ScanSnapshot snapshot, String fingerprint,
+                                                     long startTime, ScanProfiler profiler) {
+        CombinedPE.LOGGER.info("Loaded {} EMC override rules from config", snapshot.getEMCOverrides().size());
+
+        Set<EMCReportGenerator.Format> reportFormats = getReportFormats();
+        int reportRetention = Config.REPORT_RETENTION.get();
+
+        ScanProgress progress = new ScanProgress(snapshot.size(), profiler);
+        activeScan = progress;
+        lastProgressReport = System.currentTimeMillis();
+        int generation = scanGeneration;
+        RecipeEMCCalculator calculator = snapshot.getCalculator();
+
+        CompletableFuture<ScanResult> scan;
+        if (Config.BACKGROUND_SCAN.get()) {
+            CombinedPE.LOGGER.info("Scanning {} items in the background", snapshot.size());
+            notifyOperators(server, "EMC scan of " + snapshot.size() + " items started in the background");
+
+            // ProjectE's values come from its proxy, so only that capture runs on the server thread
+            progress.setPhase(ScanProgress.Phase.SOLVING);
+            scan = CompletableFuture.runAsync(calculator::prepare, SCAN_EXECUTOR)
+                .thenRunAsync(() -> captureProjectEValues(calculator), server::execute)
+                .thenApplyAsync(ignored -> runScan(snapshot, progress), SCAN_EXECUTOR);
+        } else {
+            CombinedPE.LOGGER.info("Scanning {} items on the server thread ({}ms per tick)",
+                snapshot.size(), Config.TICK_BUDGET_MS.get());
+            notifyOperators(server, "EMC scan of " + snapshot.size() + " items started");
+
+            slicedScan = new SlicedScan(snapshot, progress, Config.TICK_BUDGET_MS.get());
+            scan = slicedScan.future;
         }
 
-        Level level = (Level) event.getLevel();
+        // Disk output stays on the scan thread
+        scan.thenAcceptAsync(result -> {
+            long duration = System.currentTimeMillis() - startTime;
+            saveAndReport(result, snapshot, fingerprint, duration, reportFormats, reportRetention, profiler);
+        }, SCAN_EXECUTOR).exceptionally(error -> {
+            // A failed scan is reported when results are handed over; only report failures of the save itself
+            if (!scan.isCompletedExceptionally()) {
+                CombinedPE.LOGGER.error("Failed to save the EMC cache or write the report", error);
+            }
+            return null;
+        });
+
+        // Hand results to the server thread
+        CompletableFuture<Void> published = new CompletableFuture<>();
+        scan.whenComplete((result, error) -> server.execute(() -> {
+            if (generation != scanGeneration) {
+                CombinedPE.LOGGER.info("Discarding EMC scan results from a previous server session");
+            } else {
+                activeScan = null;
+
+                if (error != null) {
+                    CombinedPE.LOGGER.error("EMC scan failed", error);
+                    notifyOperators(server, "EMC scan failed, see the server log");
+                } else {
+                    profiler.publish();
+                    publishScan(server, result, System.currentTimeMillis() - startTime);
+                }
+            }
+            published.complete(null);
+        }));
+        return published;
+    }
 
-        // Try to load from cache first
-        if (EMCCache.cacheExists()) {
-            CombinedPE.LOGGER.info("Loading EMC values from cache...");
-            Map<Item, Double> cachedEMC = EMCCache.loadFromCache();
-            Map<Item, String> cachedSources = EMCCache.loadSourcesFromCache();
+    /**
+     * Capture ProjectE's values into the calculator (server thread)
+     * Values we derived earlier are in ProjectE now; ignore them so they are recalculated, not kept as fixed.
+     * Overridden items keep ProjectE's value, so clearing an override falls back to ProjectE's own value.
+     */
+    private static void captureProjectEValues(RecipeEMCCalculator calculator) {
+        calculator.captureProjectEValues(EMCStore.getSnapshot()::isDerived);
+    }
 
-            if (cachedEMC != null && !cachedEMC.isEmpty()) {
-                discoveredEMC.clear();
-                discoveredEMC.putAll(cachedEMC);
+    /**
+     * Solve and scan the snapshot (runs on the scan thread)
+     */
+    private static ScanResult runScan(ScanSnapshot snapshot, ScanProgress progress) {
+        progress.setPhase(ScanProgress.Phase.SOLVING);
+        snapshot.getCalculator().solve();
+
+        // Each item is a few array reads once the graph is solved, so the scan stays on one thread
+        progress.setPhase(ScanProgress.Phase.SCANNING);
+        ScanResult result = scanRange(snapshot, progress, new ScanResult(snapshot.size()), 0, snapshot.size());
+
+        completeScan(snapshot, progress, result);
+        return result;
+    }
+
+    /**
+     * Turn a fully scanned result into publishable values and free the scan's memory
+     */
+    private static void completeScan(ScanSnapshot snapshot, ScanProgress progress, ScanResult result) {
+        snapshot.getCalculator().getEvents().logSummary();
+
+        ProjectEValueTable projectEValues = snapshot.getCalculator().getProjectEValues();
+        CombinedPE.LOGGER.info("ProjectE value table: {} lookups served with {} proxy calls ({} avoided)",
+            projectEValues.getTableHits(), projectEValues.getProxyCalls(), projectEValues.getAvoidedProxyCalls());
+
+        // Values are in the result now; keep only the compact graph state and free the rest
+        result.setGraphState(snapshot.getCalculator().getGraphState());
+        result.firstMatchChanges = snapshot.getCalculator().getFirstMatchChanges();
+        snapshot.getCalculator().clearCache();
+        result.buildValues(snapshot);
+        result.setProvenance(EMCProvenance.build(result.getGraphState(), result.getValues()));
+
+        progress.setPhase(ScanProgress.Phase.DONE);
+    }
+
+    /**
+     * EMC scan run on the server thread in slices, within a time budget per tick
+     *
+     * The cursor and a single result live here between ticks, and every item goes through
+     * the same {@link #scanItem} as the background scan, so the stats are exact.
+     * The recipe graph is built and solved a slice at a time before the items are scanned, with
+     * ProjectE's values captured in a slice of their own in between.
+     */
+    private static class SlicedScan {
+
+        private final ScanSnapshot snapshot;
+        private final ScanProgress progress;
+        private final long budgetNanos;
+        private final ScanResult result;
+        private final CompletableFuture<ScanResult> future = new CompletableFuture<>();
+
+        // Next item to scan, and -1 until the graph is built and solved
+        private int cursor = -1;
+        private boolean projectECaptured;
+        private int slices;
+
+        SlicedScan(ScanSnapshot snapshot, ScanProgress progress, int budgetMs) {
+            this.snapshot = snapshot;
+            this.progress = progress;
+            this.budgetNanos = budgetMs * 1_000_000L;
+            this.result = new ScanResult(snapshot.size());
+        }
 
-                emcSources.clear();
-                if (cachedSources != null) {
-                    emcSources.putAll(cachedSources);
+        /**
+         * Run one slice (server thread)
+         * @return true once the scan is finished and the future completed
+         */
+        boolean step() {
+            long deadline = System.nanoTime() + budgetNanos;
+            slices++;
+
+            try {
+                if (cursor < 0) {
+                    progress.setPhase(ScanProgress.Phase.SOLVING);
+                    if (!snapshot.getCalculator().prepareStep(deadline)) {
+                        return false;
+                    }
+                    if (!projectECaptured) {
+                        captureProjectEValues(snapshot.getCalculator());
+                        projectECaptured = true;
+                        return false;
+                    }
+                    if (!snapshot.getCalculator().solveStep(deadline)) {
+                        return false;
+                    }
+                    progress.setPhase(ScanProgress.Phase.SCANNING);
+                    cursor = 0;
+                    return false;
                 }
 
-                CombinedPE.LOGGER.info("Successfully loaded {} EMC values from cache", cachedEMC.size());
-                return;
-            } else {
-                CombinedPE.LOGGER.warn("Cache load failed, performing full scan...");
+                while (cursor < snapshot.size()) {
+                    scanItem(snapshot, cursor++, result, progress.getProfiler());
+                    progress.itemScanned();
+                    if (System.nanoTime() >= deadline) {
+                        return false;
+                    }
+                }
+
+                CombinedPE.LOGGER.info("Server-thread EMC scan finished in {} ticks", slices);
+                completeScan(snapshot, progress, result);
+                future.complete(result);
+            } catch (Exception e) {
+                future.completeExceptionally(e);
             }
+            return true;
         }
-
-        // No cache or force re-scan: perform full scan
-        CombinedPE.LOGGER.info("World loaded, starting dynamic EMC calculation...");
-        calculator = new RecipeEMCCalculator(level);
-        scanAndCalculateEMC(level);
     }
 
     /**
-     * Scan all registered items and calculate EMC values
+     * Publish scan results (runs on the server thread)
      */
-    private static void scanAndCalculateEMC(Level level) {
-        int totalItems = 0;
-        int itemsWithEMC = 0;
-        int newEMCAssignments = 0;
-        int recipeBasedEMC = 0;
-        int tagBasedEMC = 0;
-        int overriddenEMC = 0;
-        int blacklistedItems = 0;
+    private static void publishScan(MinecraftServer server, ScanResult result, long duration) {
+        int changed = result.getValues().countChanges(EMCStore.getSnapshot());
+        EMCStore.publish(result.getValues());
+        EMCProvenance.publish(result.getProvenance());
+        lastGraphState = result.getGraphState();
+        lastBlacklist = Set.copyOf(result.blacklistedItemIds);
 
-        long startTime = System.currentTimeMillis();
-
-        // Clear previous sources
-        emcSources.clear();
+        CombinedPE.LOGGER.info("=== Dynamic EMC Scan Complete ===");
+        CombinedPE.LOGGER.info("Total items scanned: {}", result.totalItems);
+        CombinedPE.LOGGER.info("Items with existing EMC: {}", result.itemsWithEMC);
+        CombinedPE.LOGGER.info("Blacklisted items: {}", result.blacklistedItems);
+        CombinedPE.LOGGER.info("New EMC values discovered: {}", result.newEMCAssignments);
+        CombinedPE.LOGGER.info("  - From config overrides: {}", result.overriddenEMC);
+        CombinedPE.LOGGER.info("  - From recipes: {}", result.recipeBasedEMC);
+        CombinedPE.LOGGER.info("  - From tags: {}", result.tagBasedEMC);
+        CombinedPE.LOGGER.info("Values changed since the last scan: {}", changed);
+        if (result.firstMatchChanges >= 0) {
+            CombinedPE.LOGGER.info("Values changed by cheapest ingredient alternatives (vs first-match): {}",
+                result.firstMatchChanges);
+        }
+        CombinedPE.LOGGER.info("Scan duration: {}ms", duration);
 
-        // Track blacklisted items for report
-        List<String> blacklistedItemIds = new ArrayList<>();
+        // Note: EMC values are registered with ProjectE via CombinedPEMapper
+        // (ServiceLoader-based IEMCMapper registered in META-INF/services)
+        // ProjectE will call CombinedPEMapper.addMappings() during its next resource reload
+        notifyOperators(server, "EMC scan complete: " + result.newEMCAssignments + " new values in "
+            + ScanProgress.formatDuration(duration) + ". They apply to ProjectE on the next /reload");
+    }
 
-        // Load configuration overrides and blacklist
-        Map<String, Long> emcOverrides = Config.getEMCOverrides();
-        CombinedPE.LOGGER.info("Loaded {} EMC overrides from config", emcOverrides.size());
+    /**
+     * Save scan results to the cache and write the report (runs on the scan thread)
+     */
+    private static void saveAndReport(ScanResult result, ScanSnapshot snapshot, String fingerprint,
+                                      long duration, Set<EMCReportGenerator.Format> reportFormats,
+                                      int reportRetention, ScanProfiler profiler) {
+        // Save to cache for next world load
+        CombinedPE.LOGGER.info("Saving EMC values to cache...");
+        long cacheStart = System.nanoTime();
+        EMCCache.saveToCache(result.getValues(), fingerprint);
+        result.getProvenance().save(fingerprint);
+        profiler.addPhase(ScanProfiler.Phase.CACHE_SAVE, System.nanoTime() - cacheStart);
 
-        // Iterate through all registered items
-        for (Item item : BuiltInRegistries.ITEM) {
-            totalItems++;
+        // Generate report if enabled
+        if (!reportFormats.isEmpty()) {
+            EMCReportGenerator.ReportData reportData = new EMCReportGenerator.ReportData();
+            reportData.totalItems = result.totalItems;
+            reportData.itemsWithExistingEMC = result.itemsWithEMC;
+            reportData.blacklistedItems = result.blacklistedItems;
+            reportData.newEMCAssignments = result.newEMCAssignments;
+            reportData.overriddenEMC = result.overriddenEMC;
+            reportData.recipeBasedEMC = result.recipeBasedEMC;
+            reportData.tagBasedEMC = result.tagBasedEMC;
+            reportData.firstMatchChanges = result.firstMatchChanges;
+            reportData.scanDurationMs = duration;
+            reportData.values = result.getValues();
+            reportData.configOverrides = snapshot.getEMCOverrides();
+            reportData.blacklistedItemIds = result.blacklistedItemIds;
+            reportData.profile = profiler;
 
-            ItemStack stack = new ItemStack(item);
-            String itemId = BuiltInRegistries.ITEM.getKey(item).toString();
+            // Written on the report thread, so the next scan does not wait for it
+            EMCReportGenerator.generateReportAsync(reportData, reportFormats, reportRetention);
+        }
+    }
 
-            // Check blacklist first
-            if (Config.isBlacklisted(itemId)) {
-                blacklistedItems++;
-                blacklistedItemIds.add(itemId);
-                CombinedPE.LOGGER.debug("Skipping blacklisted item: {}", itemId);
-                continue;
+    /**
+     * Report formats to write, empty if reports are disabled (server thread)
+     */
+    private static Set<EMCReportGenerator.Format> getReportFormats() {
+        Set<EMCReportGenerator.Format> formats = EnumSet.noneOf(EMCReportGenerator.Format.class);
+        if (Config.GENERATE_REPORT.get()) {
+            for (String name : Config.REPORT_FORMATS.get()) {
+                EMCReportGenerator.Format format = EMCReportGenerator.Format.byName(name);
+                if (format != null) {
+                    formats.add(format);
+                }
             }
+        }
+        return formats;
+    }
 
-            // Skip items that already have EMC
-            if (ProjectECompat.hasEMC(stack)) {
-                itemsWithEMC++;
-                continue;
-            }
+    /**
+     * Apply a runtime override without a rescan, by re-solving the last scan's recipe graph
+     * Only items downstream of the overridden item are re-solved. Called on the server thread
+     * after {@link RuntimeOverrides} was updated.
+     * @return Number of published values that changed, or -1 if a scan is needed instead
+     *         (no graph retained yet or a scan is running)
+     */
+    public static int applyOverride(MinecraftServer server, Item item, long value) {
+        RecipeGraphState state = lastGraphState;
+        EMCStore.Snapshot current = EMCStore.getSnapshot();
+        if (state == null || activeScan != null || !Config.INCREMENTAL_SCAN.get()) {
+            return -1;
+        }
+
+        long startTime = System.currentTimeMillis();
 
-            // Check for config override first (highest priority)
-            if (emcOverrides.containsKey(itemId)) {
-                long overrideValue = emcOverrides.get(itemId);
-                discoveredEMC.put(item, (double) overrideValue);
-                emcSources.put(item, "config_override");
-                newEMCAssignments++;
-                overriddenEMC++;
+        // Items outside the graph have no dependents; only their own value changes
+        int node = state.getItemKeys().find(item);
+        RecipeGraphState updated = node >= 0 && node < state.getItemNodeCount()
+            ? state.withFixedValue(node, value)
+            : state;
+
+        // As in a scan, a blacklisted item gets no value of its own, but recipes using it still follow the override
+        EMCStore.Builder builder = new EMCStore.Builder();
+        current.forEach(builder::put);
+        if (!lastBlacklist.contains(BuiltInRegistries.ITEM.getKey(item).toString())) {
+            builder.put(item, value, EMCSource.CONFIG_OVERRIDE);
+        }
 
-                CombinedPE.LOGGER.info("Applied EMC override for {}: {} (from config)",
-                    itemId, overrideValue);
+        // Every derived value downstream of the item follows its new value, including items that had none
+        // Fixed nodes (ProjectE values and other overrides) are never derived, so they keep their value
+        double[] after = updated.getValues();
+        for (int id : updated.findDerivedChanges(state)) {
+            ItemKey key = state.getItemKeys().get(id);
+            if (id == node || !key.isPlain()
+                    || lastBlacklist.contains(BuiltInRegistries.ITEM.getKey(key.getItem()).toString())) {
                 continue;
             }
+            builder.put(key.getItem(), after[id],
+                updated.getInferred().get(id) ? EMCSource.TAG_INFERENCE : EMCSource.RECIPE);
+        }
 
-            // Try to calculate EMC from recipes
-            double calculatedEMC = calculator.calculateEMC(stack);
-
-            if (calculatedEMC > 0.0) {
-                // Store recipe-based EMC
-                discoveredEMC.put(item, calculatedEMC);
-                emcSources.put(item, "recipe");
-                newEMCAssignments++;
-                recipeBasedEMC++;
+        EMCStore.Snapshot values = builder.build();
+        int changed = values.countChanges(current);
+        EMCStore.publish(values);
+        lastGraphState = updated;
+
+        CombinedPE.LOGGER.info("Applied runtime EMC override {}={}: {} values changed in {}ms",
+            BuiltInRegistries.ITEM.getKey(item), value, changed, System.currentTimeMillis() - startTime);
+
+        // Provenance covers every value, so it is rebuilt on the scan thread and published unless newer
+        // values replaced these meanwhile. The override is part of the fingerprint's config section,
+        // so store the values under the new one
+        String fingerprint = getFingerprint();
+        SCAN_EXECUTOR.execute(() -> {
+            EMCProvenance provenance = EMCProvenance.build(updated, values);
+            server.execute(() -> {
+                if (EMCStore.getSnapshot() == values) {
+                    EMCProvenance.publish(provenance);
+                }
+            });
+            EMCCache.saveToCache(values, fingerprint);
+            provenance.save(fingerprint);
+        });
 
-                CombinedPE.LOGGER.info("Discovered EMC for {} from recipe: {} (will register as {})",
-                    itemId, calculatedEMC, Math.round(calculatedEMC));
-            } else {
-                // No recipe found, try tag-based inference
-                double inferredEMC = TagEMCInferrer.inferEMCFromTags(item);
+        return changed;
+    }
 
-                if (inferredEMC > 0.0) {
-                    // Store tag-inferred EMC
-                    discoveredEMC.put(item, inferredEMC);
-                    emcSources.put(item, "tag_inference");
-                    newEMCAssignments++;
-                    tagBasedEMC++;
+    /**
+     * Fingerprint of the current pack state: the last load's pack content with the current config
+     * (server thread)
+     * @return Fingerprint, or null before the first cache load or scan
+     */
+    public static String getFingerprint() {
+        return lastPackFingerprint != null ? lastPackFingerprint.withConfig(PackFingerprint.hashConfig()) : null;
+    }
 
-                    CombinedPE.LOGGER.info("Inferred EMC for {} from tags: {} (will register as {})",
-                        itemId, inferredEMC, Math.round(inferredEMC));
-                }
-            }
+    /**
+     * Step a server-thread scan, and report progress of a running scan every few seconds
+     */
+    @SubscribeEvent
+    public static void onServerTick(ServerTickEvent.Post event) {
+        if (slicedScan != null && slicedScan.step()) {
+            slicedScan = null;
         }
 
-        long endTime = System.currentTimeMillis();
-        long duration = endTime - startTime;
+        ScanProgress progress = activeScan;
+        if (progress == null) {
+            return;
+        }
 
-        CombinedPE.LOGGER.info("=== Dynamic EMC Scan Complete ===");
-        CombinedPE.LOGGER.info("Total items scanned: {}", totalItems);
-        CombinedPE.LOGGER.info("Items with existing EMC: {}", itemsWithEMC);
-        CombinedPE.LOGGER.info("Blacklisted items: {}", blacklistedItems);
-        CombinedPE.LOGGER.info("New EMC values discovered: {}", newEMCAssignments);
-        CombinedPE.LOGGER.info("  - From config overrides: {}", overriddenEMC);
-        CombinedPE.LOGGER.info("  - From recipes: {}", recipeBasedEMC);
-        CombinedPE.LOGGER.info("  - From tags: {}", tagBasedEMC);
-        CombinedPE.LOGGER.info("Scan duration: {}ms", duration);
+        long now = System.currentTimeMillis();
+        if (now - lastProgressReport < PROGRESS_REPORT_INTERVAL_MS) {
+            return;
+        }
+        lastProgressReport = now;
 
-        // Save to cache for next world load
-        CombinedPE.LOGGER.info("Saving EMC values to cache...");
-        EMCCache.saveToCache(discoveredEMC, emcSources);
+        String message = progress.describe();
+        CombinedPE.LOGGER.info("EMC scan progress: {}", message);
+        notifyOperators(event.getServer(), "EMC scan: " + message);
+    }
 
-        // Generate report if enabled
-        if (Config.GENERATE_REPORT.get()) {
-            EMCReportGenerator.ReportData reportData = new EMCReportGenerator.ReportData();
-            reportData.totalItems = totalItems;
-            reportData.itemsWithExistingEMC = itemsWithEMC;
-            reportData.blacklistedItems = blacklistedItems;
-            reportData.newEMCAssignments = newEMCAssignments;
-            reportData.overriddenEMC = overriddenEMC;
-            reportData.recipeBasedEMC = recipeBasedEMC;
-            reportData.tagBasedEMC = tagBasedEMC;
-            reportData.scanDurationMs = duration;
-            reportData.discoveredEMC = new HashMap<>(discoveredEMC);
-            reportData.configOverrides = emcOverrides;
-            reportData.blacklistedItemIds = blacklistedItemIds;
-            reportData.emcSources = emcSources;
+    /**
+     * Forget a scan still running for a stopping server
+     */
+    @SubscribeEvent
+    public static void onServerStopping(ServerStoppingEvent event) {
+        scanGeneration++;
+        activeScan = null;
+        // No more ticks will step it, so settle the future for anything waiting on the scan
+        if (slicedScan != null) {
+            slicedScan.future.cancel(false);
+            slicedScan = null;
+        }
+        lastGraphState = null;
+        lastBlacklist = Set.of();
+        lastPackFingerprint = null;
+    }
 
-            EMCReportGenerator.generateReport(reportData);
+    /**
+     * Send a message to online operators (server thread only)
+     */
+    private static void notifyOperators(MinecraftServer server, String message) {
+        Component text = Component.literal("[CombinedPE] " + message);
+        for (ServerPlayer player : server.getPlayerList().getPlayers()) {
+            if (player.hasPermissions(2)) {
+                player.sendSystemMessage(text);
+            }
         }
+    }
 
-        // Note: EMC values are registered with ProjectE via CombinedPEMapper
-        // (ServiceLoader-based IEMCMapper registered in META-INF/services)
-        // ProjectE will call CombinedPEMapper.addMappings() during resource reload
+    /**
+     * Check if a background scan is running
+     */
+    public static boolean isScanRunning() {
+        return activeScan != null;
     }
 
     /**
-     * Get all discovered EMC values (as doubles for fractional precision)
+     * Get the profile of the running scan, or of the last load or scan if none is running
+     * @return Profile, or null before the first load
      */
-    public static Map<Item, Double> getDiscoveredEMC() {
-        return new HashMap<>(discoveredEMC);
+    public static ScanProfiler getProfile() {
+        ScanProgress progress = activeScan;
+        return progress != null ? progress.getProfiler() : ScanProfiler.getLast();
     }
 
     /**
-     * Get all discovered EMC values rounded to long (for ProjectE registration)
+     * Scan a range of snapshot items into a result
      */
-    public static Map<Item, Long> getDiscoveredEMCAsLong() {
-        Map<Item, Long> rounded = new HashMap<>();
-        for (Map.Entry<Item, Double> entry : discoveredEMC.entrySet()) {
-            rounded.put(entry.getKey(), Math.round(entry.getValue()));
+    private static ScanResult scanRange(ScanSnapshot snapshot, ScanProgress progress, ScanResult result,
+                                        int from, int to) {
+        for (int index = from; index < to; index++) {
+            scanItem(snapshot, index, result, progress.getProfiler());
+            progress.itemScanned();
         }
-        return rounded;
+        return result;
     }
 
     /**
-     * Get EMC sources (for determining override priority in ProjectE registration)
+     * Determine the EMC value and source of one item, recording the time it took
      */
-    public static Map<Item, String> getEMCSources() {
-        return new HashMap<>(emcSources);
+    private static void scanItem(ScanSnapshot snapshot, int index, ScanResult result, ScanProfiler profiler) {
+        long startTime = System.nanoTime();
+        resolveItem(snapshot, index, result);
+        long nanos = System.nanoTime() - startTime;
+
+        profiler.addPhase(ScanProfiler.Phase.ITEM_SCAN, nanos);
+        profiler.recordItem(snapshot.getItemId(index), nanos);
+    }
+
+    /**
+     * Determine the EMC value and source of one item
+     * Reads only from the snapshot and writes only to the given result
+     */
+    private static void resolveItem(ScanSnapshot snapshot, int index, ScanResult result) {
+        result.totalItems++;
+
+        Item item = snapshot.getItem(index);
+        String itemId = snapshot.getItemId(index);
+
+        // Check blacklist first
+        if (snapshot.isBlacklisted(index)) {
+            result.blacklistedItems++;
+            result.blacklistedItemIds.add(itemId);
+            ScanEvents.DETAIL.debug("Skipping blacklisted item: {}", itemId);
+            return;
+        }
+
+        // Check for config or runtime override first (highest priority, even over ProjectE's own values)
+        long overrideValue = snapshot.getOverride(index);
+        if (overrideValue != ItemRuleSet.NO_MATCH) {
+            result.putValue(index, overrideValue, EMCSource.CONFIG_OVERRIDE);
+            result.newEMCAssignments++;
+            result.overriddenEMC++;
+
+            ScanEvents.DETAIL.debug("Applied EMC override for {}: {} (from config)", itemId, overrideValue);
+            return;
+        }
+
+        // Skip items that already have EMC
+        if (snapshot.getProjectEValue(item) > 0) {
+            result.itemsWithEMC++;
+            return;
+        }
+
+        // Recipe and tag values both come from the solved graph
+        double calculatedEMC = snapshot.getCalculator().getRecipeEMC(item);
+
+        if (calculatedEMC > 0.0) {
+            // Store recipe-based EMC
+            result.putValue(index, calculatedEMC, EMCSource.RECIPE);
+            result.newEMCAssignments++;
+            result.recipeBasedEMC++;
+
+            if (ScanEvents.DETAIL.isDebugEnabled()) {
+                ScanEvents.DETAIL.debug("Discovered EMC for {} from recipe: {} (will register as {})",
+                    itemId, calculatedEMC, Math.round(calculatedEMC));
+            }
+        } else {
+            // No recipe found; the solve may have inferred a value from the item's tags
+            double inferredEMC = snapshot.getCalculator().getTagInferredEMC(item);
+
+            if (inferredEMC > 0.0) {
+                // Store tag-inferred EMC
+                result.putValue(index, inferredEMC, EMCSource.TAG_INFERENCE);
+                result.newEMCAssignments++;
+                result.tagBasedEMC++;
+
+                if (ScanEvents.DETAIL.isDebugEnabled()) {
+                    ScanEvents.DETAIL.debug("Inferred EMC for {} from tags: {} (will register as {})",
+                        itemId, inferredEMC, Math.round(inferredEMC));
+                }
+            }
+        }
     }
 
     /**
      * Clear all calculated EMC values (for testing/reload)
      */
     public static void clearCache() {
-        discoveredEMC.clear();
-        emcSources.clear();
-        if (calculator != null) {
-            calculator.clearCache();
-        }
+        EMCStore.clear();
+        EMCProvenance.clear();
     }
 }
@@ -2,44 +2,89 @@ package com.riley.combinedpe.emc;
 
 import com.google.gson.*;
 import com.riley.combinedpe.CombinedPE;
+import com.riley.combinedpe.Config;
 import net.minecraft.core.registries.BuiltInRegistries;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.item.Item;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Caches calculated EMC values to disk to avoid re-scanning on every world load
  *
  * Cache structure:
- * - Saved to: config/combinedpe/emc_cache.json
+ * - Saved to: config/combinedpe/emc_cache.bin
  * - Contains: EMC values, sources, metadata
  * - Versioned for compatibility checking
+ * - Stamped with a {@link PackFingerprint} of mods, recipes, tags and config
+ *
+ * Binary format (big-endian):
+ * - Header: magic, format version, Minecraft version, fingerprint, scan time (epoch ms)
+ * - String table: item IDs, one per entry
+ * - Columns: EMC values (double per entry), sources ({@link EMCSource} byte per entry)
+ *
+ * The file is read in one go and parsed straight into an {@link EMCStore.Snapshot}.
+ * A pretty-printed JSON copy can be exported for humans (export_cache_json), but is never read back.
+ * Precomputed cache artifacts shipped with a pack ({@link EMCPrecompute}) use the same format.
+ *
+ * Shared cache (shared_cache_dir): server instances on one host can share a directory of entries
+ * named by fingerprint (emc_<fingerprint>.bin), so the first instance to scan a pack state serves
+ * every other one. Entries are written to a temp file and renamed into place under an exclusive
+ * file lock (emc_<fingerprint>.lock) and read under a shared one. Loading an entry refreshes its
+ * modification time; entries unused for shared_cache_max_age_days are deleted after each save,
+ * together with their lock file, while holding that lock. An instance that opened the deleted lock
+ * file before it went only ever writes a complete entry by rename, and the collector checks an
+ * entry's age again under the lock, so a fresh entry is never collected.
  *
  * Cache invalidation:
  * - Manual deletion of cache file
  * - Config option to force re-scan
  * - Version mismatch
+ * - Fingerprint mismatch (mods, datapacks, recipes, tags or relevant config changed)
  */
 public class EMCCache {
 
-    private static final Path CACHE_FILE = Paths.get("config", "combinedpe", "emc_cache.json");
-    private static final int CACHE_VERSION = 1;
+    private static final Path CACHE_FILE = Paths.get("config", "combinedpe", "emc_cache.bin");
+    private static final Path JSON_EXPORT_FILE = Paths.get("config", "combinedpe", "emc_cache.json");
+    private static final int CACHE_MAGIC = 0x43504543; // "CPEC"
+    private static final int CACHE_VERSION = 3;
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
 
+    private static final String SHARED_ENTRY_PREFIX = "emc_";
+    private static final String SHARED_LOCK_EXTENSION = ".lock";
+
+    // A JVM may not hold overlapping locks on one file, so this JVM's shared cache access is serialized
+    private static final Object SHARED_CACHE_LOCK = new Object();
+
+    // Fingerprint this instance last loaded from or saved to the shared cache (null if none)
+    private static volatile String lastSharedFingerprint;
+
     /**
-     * Cache data structure
+     * JSON export structure (human-readable copy of the cache)
      */
     public static class CacheData {
         public int version = CACHE_VERSION;
         public String minecraftVersion;
+        public String fingerprint;
         public String scanTimestamp;
         public Map<String, CachedEMCEntry> emcValues = new HashMap<>();
 
@@ -55,46 +100,59 @@ public class EMCCache {
     }
 
     /**
-     * Check if cache file exists and is valid
+     * Load EMC values and sources from cache in a single read
+     * @param fingerprint Fingerprint of the current pack state
+     * @return Loaded values and sources, or null if there is no valid cache for this pack state
      */
-    public static boolean cacheExists() {
-        if (!Files.exists(CACHE_FILE)) {
-            return false;
-        }
-
-        try {
-            CacheData cache = loadCacheData();
-            if (cache.version != CACHE_VERSION) {
-                CombinedPE.LOGGER.warn("EMC cache version mismatch (expected {}, found {})",
-                    CACHE_VERSION, cache.version);
-                return false;
+    public static EMCStore.Snapshot load(String fingerprint) {
+        EMCStore.Snapshot snapshot = load(CACHE_FILE, fingerprint);
+        if (snapshot == null) {
+            Path sharedDir = getSharedCacheDir();
+            if (sharedDir != null) {
+                snapshot = loadShared(sharedDir, fingerprint);
             }
-            return true;
-        } catch (Exception e) {
-            CombinedPE.LOGGER.warn("Failed to read EMC cache, will re-scan", e);
-            return false;
         }
+        return snapshot;
     }
 
     /**
-     * Load EMC values from cache
-     * @return Map of Item to Double EMC values, or null if cache invalid
+     * Load EMC values and sources from a cache file in a single read
+     * @param file Cache file or precomputed artifact
+     * @param fingerprint Fingerprint of the current pack state
+     * @return Loaded values and sources, or null if the file is missing, invalid or for another pack state
      */
-    public static Map<Item, Double> loadFromCache() {
+    static EMCStore.Snapshot load(Path file, String fingerprint) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+
         try {
-            CacheData cache = loadCacheData();
+            ByteBuffer buffer = readFile(file);
 
-            if (cache.version != CACHE_VERSION) {
-                CombinedPE.LOGGER.warn("Cache version mismatch, invalidating cache");
+            int magic = buffer.getInt();
+            int version = buffer.getInt();
+            if (magic != CACHE_MAGIC || version != CACHE_VERSION) {
+                CombinedPE.LOGGER.warn("EMC cache version mismatch (expected {}, found {})",
+                    CACHE_VERSION, magic == CACHE_MAGIC ? version : "unknown format");
                 return null;
             }
 
-            Map<Item, Double> emcValues = new HashMap<>();
-            int loadedCount = 0;
+            String minecraftVersion = readString(buffer);
+            String cachedFingerprint = readString(buffer);
+            long scanTime = buffer.getLong();
+
+            if (!fingerprint.equals(cachedFingerprint)) {
+                CombinedPE.LOGGER.info("EMC cache is stale (fingerprint {} does not match {}), will re-scan",
+                    cachedFingerprint, fingerprint);
+                return null;
+            }
+
+            int count = buffer.getInt();
+            Item[] items = new Item[count];
             int skippedCount = 0;
 
-            for (Map.Entry<String, CacheData.CachedEMCEntry> entry : cache.emcValues.entrySet()) {
-                String itemId = entry.getKey();
+            for (int i = 0; i < count; i++) {
+                String itemId = readString(buffer);
                 ResourceLocation itemLocation = ResourceLocation.tryParse(itemId);
 
                 if (itemLocation == null) {
@@ -110,80 +168,254 @@ public class EMCCache {
                     continue;
                 }
 
-                emcValues.put(item, entry.getValue().value);
-                loadedCount++;
+                items[i] = item;
+            }
+
+            // Values and sources are stored as columns after the string table
+            int sourcesOffset = buffer.position() + count * Double.BYTES;
+            EMCStore.Builder builder = new EMCStore.Builder();
+            for (int i = 0; i < count; i++) {
+                double value = buffer.getDouble();
+                if (items[i] != null) {
+                    builder.put(items[i], value, EMCSource.byId(buffer.get(sourcesOffset + i)));
+                }
             }
+            EMCStore.Snapshot snapshot = builder.build();
 
-            CombinedPE.LOGGER.info("Loaded {} EMC values from cache (scanned: {}, skipped: {})",
-                loadedCount, cache.scanTimestamp, skippedCount);
+            CombinedPE.LOGGER.info("Loaded {} EMC values from {} (scanned: {}, Minecraft {}, skipped: {})",
+                snapshot.size(), file, formatTimestamp(scanTime), minecraftVersion, skippedCount);
 
-            return emcValues;
+            return snapshot;
 
         } catch (Exception e) {
-            CombinedPE.LOGGER.error("Failed to load EMC cache", e);
+            CombinedPE.LOGGER.error("Failed to load EMC cache, will re-scan", e);
             return null;
         }
     }
 
     /**
-     * Load EMC sources from cache for reporting
+     * Save EMC values to cache
+     * @param fingerprint Fingerprint of the pack state the values were calculated for
      */
-    public static Map<Item, String> loadSourcesFromCache() {
+    public static void saveToCache(EMCStore.Snapshot snapshot, String fingerprint) {
+        if (save(CACHE_FILE, snapshot, fingerprint) && Config.EXPORT_CACHE_JSON.get()) {
+            exportJson(snapshot, fingerprint);
+        }
+
+        Path sharedDir = getSharedCacheDir();
+        if (sharedDir != null) {
+            saveShared(sharedDir, snapshot, fingerprint);
+        }
+    }
+
+    /**
+     * Save EMC values to a cache file
+     * @param file Cache file or precomputed artifact
+     * @param fingerprint Fingerprint of the pack state the values were calculated for
+     * @return true if saved
+     */
+    static boolean save(Path file, EMCStore.Snapshot snapshot, String fingerprint) {
         try {
-            CacheData cache = loadCacheData();
-            Map<Item, String> sources = new HashMap<>();
+            // Create cache directory if needed
+            Files.createDirectories(file.getParent());
+
+            String minecraftVersion = net.minecraft.SharedConstants.getCurrentVersion().getName();
+            long scanTime = System.currentTimeMillis();
+
+            int count = snapshot.size();
+            String[] itemIds = new String[count];
+            double[] values = new double[count];
+            byte[] sources = new byte[count];
+
+            int[] index = new int[1];
+            snapshot.forEach((item, value, source) -> {
+                int i = index[0]++;
+                itemIds[i] = BuiltInRegistries.ITEM.getKey(item).toString();
+                values[i] = value;
+                sources[i] = source.getId();
+            });
+
+            // Write to a temporary file and move it into place, so a crash never leaves a torn cache
+            // Named per process, so instances sharing a directory never write the same temp file
+            Path tempFile = file.resolveSibling(file.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(CACHE_MAGIC);
+                out.writeInt(CACHE_VERSION);
+                writeString(out, minecraftVersion);
+                writeString(out, fingerprint);
+                out.writeLong(scanTime);
+
+                out.writeInt(count);
+                for (String itemId : itemIds) {
+                    writeString(out, itemId);
+                }
+                for (double value : values) {
+                    out.writeDouble(value);
+                }
+                out.write(sources);
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
 
-            for (Map.Entry<String, CacheData.CachedEMCEntry> entry : cache.emcValues.entrySet()) {
-                String itemId = entry.getKey();
-                ResourceLocation itemLocation = ResourceLocation.tryParse(itemId);
+            CombinedPE.LOGGER.info("Saved {} EMC values to cache: {}",
+                count, file.toAbsolutePath());
+            return true;
 
-                if (itemLocation == null) continue;
+        } catch (Exception e) {
+            CombinedPE.LOGGER.error("Failed to save EMC cache to {}", file, e);
+            return false;
+        }
+    }
 
-                Item item = BuiltInRegistries.ITEM.get(itemLocation);
-                if (item == null || item == net.minecraft.world.item.Items.AIR) continue;
+    /**
+     * Get the shared cache directory, or null if sharing is disabled
+     */
+    private static Path getSharedCacheDir() {
+        String dir = Config.SHARED_CACHE_DIR.get().trim();
+        return dir.isEmpty() ? null : Paths.get(dir);
+    }
 
-                sources.put(item, entry.getValue().source);
-            }
+    private static Path getSharedEntry(Path sharedDir, String fingerprint) {
+        return sharedDir.resolve(SHARED_ENTRY_PREFIX + fingerprint + ".bin");
+    }
 
-            return sources;
+    private static Path getLockFile(Path sharedDir, String fingerprint) {
+        return sharedDir.resolve(SHARED_ENTRY_PREFIX + fingerprint + SHARED_LOCK_EXTENSION);
+    }
 
-        } catch (Exception e) {
-            CombinedPE.LOGGER.error("Failed to load sources from cache", e);
-            return new HashMap<>();
+    private static FileChannel openLockFile(Path sharedDir, String fingerprint) throws IOException {
+        return FileChannel.open(getLockFile(sharedDir, fingerprint),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Load a shared cache entry under a shared lock
+     */
+    private static EMCStore.Snapshot loadShared(Path sharedDir, String fingerprint) {
+        Path entry = getSharedEntry(sharedDir, fingerprint);
+        if (!Files.exists(entry)) {
+            return null;
+        }
+
+        synchronized (SHARED_CACHE_LOCK) {
+            try (FileChannel lockFile = openLockFile(sharedDir, fingerprint);
+                 FileLock lock = lockFile.lock(0, Long.MAX_VALUE, true)) {
+                EMCStore.Snapshot snapshot = load(entry, fingerprint);
+                if (snapshot != null) {
+                    // Used entries stay young, so only abandoned pack states age out
+                    Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+                    lastSharedFingerprint = fingerprint;
+                }
+                return snapshot;
+            } catch (IOException e) {
+                CombinedPE.LOGGER.warn("Failed to read shared EMC cache entry {}", entry, e);
+                return null;
+            }
         }
     }
 
     /**
-     * Save EMC values to cache
+     * Save a shared cache entry under an exclusive lock, then delete entries past their age
      */
-    public static void saveToCache(Map<Item, Double> emcValues, Map<Item, String> emcSources) {
-        try {
-            // Create cache directory if needed
-            Files.createDirectories(CACHE_FILE.getParent());
+    private static void saveShared(Path sharedDir, EMCStore.Snapshot snapshot, String fingerprint) {
+        synchronized (SHARED_CACHE_LOCK) {
+            try {
+                Files.createDirectories(sharedDir);
+                try (FileChannel lockFile = openLockFile(sharedDir, fingerprint);
+                     FileLock lock = lockFile.lock()) {
+                    if (save(getSharedEntry(sharedDir, fingerprint), snapshot, fingerprint)) {
+                        lastSharedFingerprint = fingerprint;
+                    }
+                }
+            } catch (IOException e) {
+                CombinedPE.LOGGER.warn("Failed to write shared EMC cache entry for {}", fingerprint, e);
+            }
 
-            CacheData cache = new CacheData();
-            cache.minecraftVersion = net.minecraft.SharedConstants.getCurrentVersion().getName();
-            cache.scanTimestamp = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+            int maxAgeDays = Config.SHARED_CACHE_MAX_AGE_DAYS.get();
+            if (maxAgeDays > 0) {
+                collectSharedGarbage(sharedDir, fingerprint, maxAgeDays * 24L * 60 * 60 * 1000);
+            }
+        }
+    }
 
-            // Convert Item map to String-keyed map for JSON
-            for (Map.Entry<Item, Double> entry : emcValues.entrySet()) {
-                Item item = entry.getKey();
-                String itemId = BuiltInRegistries.ITEM.getKey(item).toString();
-                String source = emcSources.getOrDefault(item, "unknown");
+    /**
+     * Delete shared entries (and leftover temp files) not used within the maximum age, and the lock
+     * files of deleted entries
+     * Entries locked by another instance are skipped and collected by a later save.
+     */
+    private static void collectSharedGarbage(Path sharedDir, String currentFingerprint, long maxAgeMs) {
+        long cutoff = System.currentTimeMillis() - maxAgeMs;
+        List<Path> expired = new ArrayList<>();
+
+        try (Stream<Path> files = Files.list(sharedDir)) {
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                if (!name.startsWith(SHARED_ENTRY_PREFIX) || name.endsWith(SHARED_LOCK_EXTENSION)) {
+                    return;
+                }
+                try {
+                    if (Files.getLastModifiedTime(file).toMillis() < cutoff) {
+                        expired.add(file);
+                    }
+                } catch (IOException ignored) {
+                    // Deleted by another instance meanwhile
+                }
+            });
+        } catch (IOException e) {
+            CombinedPE.LOGGER.warn("Failed to list shared EMC cache {}", sharedDir, e);
+            return;
+        }
 
-                cache.emcValues.put(itemId, new CacheData.CachedEMCEntry(entry.getValue(), source));
+        int deleted = 0;
+        for (Path file : expired) {
+            String name = file.getFileName().toString();
+            // emc_<fingerprint>.bin, or emc_<fingerprint>.bin.<pid>.tmp
+            int end = name.indexOf('.');
+            String fingerprint = end < 0 ? null : name.substring(SHARED_ENTRY_PREFIX.length(), end);
+            if (fingerprint == null || fingerprint.equals(currentFingerprint)) {
+                continue;
             }
 
-            // Write to file
-            try (Writer writer = Files.newBufferedWriter(CACHE_FILE)) {
-                GSON.toJson(cache, writer);
+            try (FileChannel lockFile = openLockFile(sharedDir, fingerprint);
+                 FileLock lock = lockFile.tryLock()) {
+                // Another instance may have written the entry again since the listing
+                if (lock == null || Files.getLastModifiedTime(file).toMillis() >= cutoff) {
+                    continue;
+                }
+                if (Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+                if (!Files.exists(getSharedEntry(sharedDir, fingerprint))) {
+                    Files.deleteIfExists(getLockFile(sharedDir, fingerprint));
+                }
+            } catch (IOException e) {
+                CombinedPE.LOGGER.debug("Could not delete expired shared EMC cache entry {}", file, e);
             }
+        }
 
-            CombinedPE.LOGGER.info("Saved {} EMC values to cache: {}",
-                emcValues.size(), CACHE_FILE.toAbsolutePath());
+        if (deleted > 0) {
+            CombinedPE.LOGGER.info("Deleted {} expired entries from the shared EMC cache", deleted);
+        }
+    }
 
+    /**
+     * Write a human-readable JSON copy of the cache (never read back)
+     */
+    private static void exportJson(EMCStore.Snapshot snapshot, String fingerprint) {
+        CacheData cache = new CacheData();
+        cache.minecraftVersion = net.minecraft.SharedConstants.getCurrentVersion().getName();
+        cache.fingerprint = fingerprint;
+        cache.scanTimestamp = formatTimestamp(System.currentTimeMillis());
+
+        snapshot.forEach((item, value, source) -> cache.emcValues.put(
+            BuiltInRegistries.ITEM.getKey(item).toString(),
+            new CacheData.CachedEMCEntry(value, source.getName())));
+
+        try (Writer writer = Files.newBufferedWriter(JSON_EXPORT_FILE)) {
+            GSON.toJson(cache, writer);
+            CombinedPE.LOGGER.info("Exported EMC cache as JSON: {}", JSON_EXPORT_FILE.toAbsolutePath());
         } catch (Exception e) {
-            CombinedPE.LOGGER.error("Failed to save EMC cache", e);
+            CombinedPE.LOGGER.error("Failed to export EMC cache as JSON", e);
         }
     }
 
@@ -192,12 +424,30 @@ public class EMCCache {
      */
     public static boolean invalidateCache() {
         try {
+            boolean deleted = false;
+
+            // Without this, the next start would load the same values back from the shared cache
+            Path sharedDir = getSharedCacheDir();
+            String sharedFingerprint = lastSharedFingerprint;
+            if (sharedDir != null && sharedFingerprint != null) {
+                synchronized (SHARED_CACHE_LOCK) {
+                    try (FileChannel lockFile = openLockFile(sharedDir, sharedFingerprint);
+                         FileLock lock = lockFile.lock()) {
+                        deleted = Files.deleteIfExists(getSharedEntry(sharedDir, sharedFingerprint));
+                    }
+                }
+                lastSharedFingerprint = null;
+            }
+
             if (Files.exists(CACHE_FILE)) {
                 Files.delete(CACHE_FILE);
+                deleted = true;
+            }
+
+            if (deleted) {
                 CombinedPE.LOGGER.info("EMC cache invalidated");
-                return true;
             }
-            return false;
+            return deleted;
         } catch (Exception e) {
             CombinedPE.LOGGER.error("Failed to delete cache file", e);
             return false;
@@ -205,14 +455,44 @@ public class EMCCache {
     }
 
     /**
-     * Load cache data from file
+     * Read a whole file into a buffer with a single channel read
+     * (not memory-mapped: on Windows a mapped file cannot be replaced or deleted until the mapping is collected)
      */
-    private static CacheData loadCacheData() throws IOException {
-        try (Reader reader = Files.newBufferedReader(CACHE_FILE)) {
-            return GSON.fromJson(reader, CacheData.class);
+    private static ByteBuffer readFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Cache file too large: " + size + " bytes");
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Unexpected end of cache file");
+                }
+            }
+            return buffer.flip();
         }
     }
 
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static String formatTimestamp(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault())
+            .format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+    }
+
     /**
      * Get cache file path
      */
@@ -0,0 +1,71 @@
+package com.riley.combinedpe.emc;
+
+import com.riley.combinedpe.CombinedPE;
+import net.minecraft.server.MinecraftServer;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Precomputed EMC cache artifacts, shipped with a modpack for zero-cost cold starts
+ *
+ * Pack builders start a server once with -Dcombinedpe.precompute=true (or the precomputeEmc
+ * Gradle run). It scans, writes config/combinedpe/precomputed/emc_<fingerprint>.bin and stops.
+ * Servers started from the shipped pack find the artifact matching their {@link PackFingerprint}
+ * and load it instead of scanning. An artifact for another pack state is simply never looked up.
+ *
+ * The fingerprint covers mods, recipes, tags and EMC config, so the precompute server must
+ * use the same mods, config and datapacks as the servers the pack is shipped to.
+ */
+public final class EMCPrecompute {
+
+    /**
+     * System property that turns a server start into a precompute run
+     */
+    public static final String PRECOMPUTE_PROPERTY = "combinedpe.precompute";
+
+    private static final Path ARTIFACT_DIR = Paths.get("config", "combinedpe", "precomputed");
+
+    private EMCPrecompute() {}
+
+    /**
+     * Check if this server was started to precompute EMC values
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(PRECOMPUTE_PROPERTY);
+    }
+
+    /**
+     * Path of the artifact for a pack state (named by fingerprint, so several can ship side by side)
+     */
+    public static Path getArtifact(String fingerprint) {
+        return ARTIFACT_DIR.resolve("emc_" + fingerprint + ".bin");
+    }
+
+    /**
+     * Load the shipped artifact for a pack state
+     * @return Values, or null if no valid artifact matches the fingerprint
+     */
+    static EMCStore.Snapshot load(String fingerprint) {
+        return EMCCache.load(getArtifact(fingerprint), fingerprint);
+    }
+
+    /**
+     * Write the published values as the artifact for the current pack state, then stop the server
+     * Called on the server thread once the precompute scan is published
+     */
+    static void finish(MinecraftServer server) {
+        EMCStore.Snapshot values = EMCStore.getSnapshot();
+        String fingerprint = DynamicEMCMapper.getFingerprint();
+        Path artifact = fingerprint != null ? getArtifact(fingerprint) : null;
+
+        if (artifact != null && !values.isEmpty() && EMCCache.save(artifact, values, fingerprint)) {
+            CombinedPE.LOGGER.info("Precomputed {} EMC values into {}; ship it in the pack's config/combinedpe/precomputed",
+                values.size(), artifact.toAbsolutePath());
+        } else {
+            CombinedPE.LOGGER.error("EMC precompute produced no artifact, see the log above");
+        }
+
+        server.halt(false);
+    }
+}
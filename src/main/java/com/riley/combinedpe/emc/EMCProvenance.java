@@ -0,0 +1,416 @@
+package com.riley.combinedpe.emc;
+
+import com.riley.combinedpe.CombinedPE;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.Item;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Records how each published EMC value was derived, for /combinedpe explain
+ *
+ * For every value: its source and, for recipe values, the winning recipe ID and type, the
+ * multiplier, the output count and each chosen ingredient (for multi-item ingredients, the
+ * chosen alternative) with its count and unit value.
+ *
+ * Stored in columns: every string (item, recipe and recipe type IDs) is kept once in a string
+ * table and referenced by int index, rows are sorted by item ID for binary search, and the
+ * ingredients of all rows share flat arrays indexed by a per-row start offset. A full pack
+ * takes a few MB on disk and in memory.
+ *
+ * Built from the solved {@link RecipeGraphState} once a scan completes, saved next to the cache
+ * (emc_provenance.bin, stamped with the same fingerprint) and loaded with it.
+ */
+public final class EMCProvenance {
+
+    private static final Path PROVENANCE_FILE = EMCCache.getCacheFile().resolveSibling("emc_provenance.bin");
+    private static final int PROVENANCE_MAGIC = 0x43504550; // "CPEP"
+    private static final int PROVENANCE_VERSION = 1;
+
+    private static final EMCProvenance EMPTY = new Builder().build();
+
+    private static volatile EMCProvenance current = EMPTY;
+
+    private final String[] strings;
+
+    // Per row, sorted by item ID; name columns index strings (-1 for none)
+    private final int[] itemNames;
+    private final byte[] sources;
+    private final double[] values;
+    private final int[] recipeNames;
+    private final int[] recipeTypes;
+    private final double[] multipliers;
+    private final int[] outputCounts;
+    private final int[] inputStart;
+
+    // Per ingredient, for all rows
+    private final int[] inputNames;
+    private final int[] inputCounts;
+    private final double[] inputValues;
+
+    private EMCProvenance(String[] strings, int[] itemNames, byte[] sources, double[] values,
+                          int[] recipeNames, int[] recipeTypes, double[] multipliers, int[] outputCounts,
+                          int[] inputStart, int[] inputNames, int[] inputCounts, double[] inputValues) {
+        this.strings = strings;
+        this.itemNames = itemNames;
+        this.sources = sources;
+        this.values = values;
+        this.recipeNames = recipeNames;
+        this.recipeTypes = recipeTypes;
+        this.multipliers = multipliers;
+        this.outputCounts = outputCounts;
+        this.inputStart = inputStart;
+        this.inputNames = inputNames;
+        this.inputCounts = inputCounts;
+        this.inputValues = inputValues;
+    }
+
+    /**
+     * Get the provenance of the currently published values (never null)
+     */
+    public static EMCProvenance getCurrent() {
+        return current;
+    }
+
+    /**
+     * Publish provenance along with the values it describes
+     */
+    public static void publish(EMCProvenance provenance) {
+        current = provenance;
+    }
+
+    /**
+     * Drop the published provenance
+     */
+    public static void clear() {
+        current = EMPTY;
+    }
+
+    /**
+     * Build the provenance of published values from the solved graph they came from
+     * @param state Solved recipe graph (null if not captured; recipe values then have no recipe details)
+     * @param values Values the graph produced
+     */
+    public static EMCProvenance build(RecipeGraphState state, EMCStore.Snapshot values) {
+        Builder builder = new Builder();
+        double[] nodeValues = state == null ? null : state.getValues();
+
+        values.forEach((item, value, source) -> {
+            String itemId = BuiltInRegistries.ITEM.getKey(item).toString();
+
+            RecipeEMCCalculator.GraphRecipe recipe = null;
+            if (source == EMCSource.RECIPE && state != null) {
+                int node = state.getItemKeys().find(item);
+                ResourceLocation best = node >= 0 && node < state.getItemNodeCount() ? state.getBestRecipe(node) : null;
+                recipe = best == null ? null : state.getRecipe(best);
+            }
+
+            if (recipe == null) {
+                builder.add(itemId, source, value, null, null, 0.0, 0, new String[0], new int[0], new double[0]);
+                return;
+            }
+
+            int[] inputs = recipe.inputs();
+            String[] names = new String[inputs.length];
+            double[] unitValues = new double[inputs.length];
+            for (int i = 0; i < inputs.length; i++) {
+                names[i] = describeNode(state, inputs[i]);
+                unitValues[i] = nodeValues[inputs[i]];
+            }
+            builder.add(itemId, source, value, recipe.id().toString(), recipe.type().toString(),
+                recipe.multiplier(), recipe.outputCount(), names, recipe.inputCounts(), unitValues);
+        });
+
+        return builder.build();
+    }
+
+    /**
+     * Name an ingredient node; for an ingredient group, the alternative that was chosen
+     */
+    private static String describeNode(RecipeGraphState state, int node) {
+        if (node < state.getItemNodeCount()) {
+            return describeKey(state.getItemKeys().get(node));
+        }
+
+        int alternatives = state.getIngredientGroups().getKeys(node - state.getItemNodeCount()).length;
+        ResourceLocation best = state.getBestRecipe(node);
+        RecipeEMCCalculator.GraphRecipe chosen = best == null ? null : state.getRecipe(best);
+        if (chosen == null) {
+            return "(none of " + alternatives + " alternatives)";
+        }
+
+        String name = describeKey(state.getItemKeys().get(chosen.inputs()[0]));
+        if (chosen.inputCounts()[0] != 1) {
+            name = chosen.inputCounts()[0] + " " + name;
+        }
+        return name + " (cheapest of " + alternatives + " alternatives)";
+    }
+
+    private static String describeKey(ItemKey key) {
+        String itemId = BuiltInRegistries.ITEM.getKey(key.getItem()).toString();
+        return key.isPlain() ? itemId : itemId + key.getComponents();
+    }
+
+    public int size() {
+        return itemNames.length;
+    }
+
+    /**
+     * Explain how an item got its value
+     * @return Explanation lines, or null if no published value of ours covers the item
+     */
+    public List<String> explain(Item item) {
+        String itemId = BuiltInRegistries.ITEM.getKey(item).toString();
+        int row = findRow(itemId);
+        if (row < 0) {
+            return null;
+        }
+
+        List<String> lines = new ArrayList<>();
+        EMCSource source = EMCSource.byId(sources[row]);
+        lines.add(itemId + " = " + formatValue(values[row]) + " EMC (" + source.getName() + ")");
+
+        if (recipeNames[row] < 0) {
+            switch (source) {
+                case CONFIG_OVERRIDE -> lines.add("  Set by a config or runtime (setemc) override");
+                case TAG_INFERENCE -> lines.add("  Median of the average ProjectE and recipe values of the item's tags");
+                case RECIPE -> lines.add("  Recipe details were not recorded (run /combinedpe rescan)");
+                default -> { }
+            }
+            return lines;
+        }
+
+        lines.add("  Recipe " + strings[recipeNames[row]] + " (" + strings[recipeTypes[row]] + "), multiplier "
+            + formatValue(multipliers[row]) + ", makes " + outputCounts[row]);
+
+        double total = 0.0;
+        for (int i = inputStart[row]; i < inputStart[row + 1]; i++) {
+            double cost = inputValues[i] * inputCounts[i];
+            total += cost;
+            lines.add("  - " + inputCounts[i] + " x " + strings[inputNames[i]] + " @ " + formatValue(inputValues[i])
+                + " = " + formatValue(cost));
+        }
+        lines.add("  (" + formatValue(total) + " x " + formatValue(multipliers[row]) + ") / " + outputCounts[row]
+            + " = " + formatValue(total * multipliers[row] / outputCounts[row])
+            + " (at least " + formatValue(RecipeEMCCalculator.MIN_EMC_VALUE) + ")");
+        return lines;
+    }
+
+    private int findRow(String itemId) {
+        int low = 0;
+        int high = itemNames.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int compare = strings[itemNames[middle]].compareTo(itemId);
+            if (compare < 0) {
+                low = middle + 1;
+            } else if (compare > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private static String formatValue(double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    /**
+     * Save to disk next to the cache (temp file + atomic move)
+     * @param fingerprint Fingerprint of the pack state the values were calculated for
+     */
+    public void save(String fingerprint) {
+        try {
+            Files.createDirectories(PROVENANCE_FILE.getParent());
+
+            Path tempFile = PROVENANCE_FILE.resolveSibling(PROVENANCE_FILE.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(PROVENANCE_MAGIC);
+                out.writeInt(PROVENANCE_VERSION);
+                out.writeUTF(fingerprint);
+
+                out.writeInt(strings.length);
+                for (String string : strings) {
+                    out.writeUTF(string);
+                }
+
+                out.writeInt(itemNames.length);
+                writeInts(out, itemNames);
+                out.write(sources);
+                writeDoubles(out, values);
+                writeInts(out, recipeNames);
+                writeInts(out, recipeTypes);
+                writeDoubles(out, multipliers);
+                writeInts(out, outputCounts);
+                writeInts(out, inputStart);
+
+                out.writeInt(inputNames.length);
+                writeInts(out, inputNames);
+                writeInts(out, inputCounts);
+                writeDoubles(out, inputValues);
+            }
+            Files.move(tempFile, PROVENANCE_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } catch (Exception e) {
+            CombinedPE.LOGGER.error("Failed to save EMC provenance", e);
+        }
+    }
+
+    /**
+     * Load the provenance saved with the cache
+     * @param fingerprint Fingerprint of the current pack state
+     * @return Provenance, or null if there is none for this pack state
+     */
+    public static EMCProvenance load(String fingerprint) {
+        if (!Files.exists(PROVENANCE_FILE)) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(PROVENANCE_FILE)))) {
+            if (in.readInt() != PROVENANCE_MAGIC || in.readInt() != PROVENANCE_VERSION
+                    || !fingerprint.equals(in.readUTF())) {
+                return null;
+            }
+
+            String[] strings = new String[in.readInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = in.readUTF();
+            }
+
+            int rows = in.readInt();
+            int[] itemNames = readInts(in, rows);
+            byte[] sources = new byte[rows];
+            in.readFully(sources);
+            double[] values = readDoubles(in, rows);
+            int[] recipeNames = readInts(in, rows);
+            int[] recipeTypes = readInts(in, rows);
+            double[] multipliers = readDoubles(in, rows);
+            int[] outputCounts = readInts(in, rows);
+            int[] inputStart = readInts(in, rows + 1);
+
+            int inputs = in.readInt();
+            int[] inputNames = readInts(in, inputs);
+            int[] inputCounts = readInts(in, inputs);
+            double[] inputValues = readDoubles(in, inputs);
+
+            return new EMCProvenance(strings, itemNames, sources, values, recipeNames, recipeTypes,
+                multipliers, outputCounts, inputStart, inputNames, inputCounts, inputValues);
+
+        } catch (Exception e) {
+            CombinedPE.LOGGER.warn("Failed to load EMC provenance, /combinedpe explain needs a rescan", e);
+            return null;
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] array) throws IOException {
+        for (int value : array) {
+            out.writeInt(value);
+        }
+    }
+
+    private static void writeDoubles(DataOutputStream out, double[] array) throws IOException {
+        for (double value : array) {
+            out.writeDouble(value);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in, int length) throws IOException {
+        int[] array = new int[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = in.readInt();
+        }
+        return array;
+    }
+
+    private static double[] readDoubles(DataInputStream in, int length) throws IOException {
+        double[] array = new double[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = in.readDouble();
+        }
+        return array;
+    }
+
+    /**
+     * Collects rows, interning strings, and sorts them into columns
+     */
+    private static final class Builder {
+
+        private record Row(String itemId, EMCSource source, double value, String recipeId, String recipeType,
+                           double multiplier, int outputCount, String[] inputs, int[] inputCounts,
+                           double[] inputValues) {}
+
+        private final List<Row> rows = new ArrayList<>();
+        private final Map<String, Integer> stringIds = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        void add(String itemId, EMCSource source, double value, String recipeId, String recipeType,
+                 double multiplier, int outputCount, String[] inputs, int[] inputCounts, double[] inputValues) {
+            rows.add(new Row(itemId, source, value, recipeId, recipeType, multiplier, outputCount,
+                inputs, inputCounts, inputValues));
+        }
+
+        private int intern(String string) {
+            if (string == null) {
+                return -1;
+            }
+            return stringIds.computeIfAbsent(string, key -> {
+                strings.add(key);
+                return strings.size() - 1;
+            });
+        }
+
+        EMCProvenance build() {
+            rows.sort(Comparator.comparing(Row::itemId));
+
+            int count = rows.size();
+            int inputTotal = 0;
+            for (Row row : rows) {
+                inputTotal += row.inputs().length;
+            }
+
+            int[] itemNames = new int[count];
+            byte[] sources = new byte[count];
+            double[] values = new double[count];
+            int[] recipeNames = new int[count];
+            int[] recipeTypes = new int[count];
+            double[] multipliers = new double[count];
+            int[] outputCounts = new int[count];
+            int[] inputStart = new int[count + 1];
+            int[] inputNames = new int[inputTotal];
+            int[] inputCounts = new int[inputTotal];
+            double[] inputValues = new double[inputTotal];
+
+            int next = 0;
+            for (int r = 0; r < count; r++) {
+                Row row = rows.get(r);
+                itemNames[r] = intern(row.itemId());
+                sources[r] = row.source().getId();
+                values[r] = row.value();
+                recipeNames[r] = intern(row.recipeId());
+                recipeTypes[r] = intern(row.recipeType());
+                multipliers[r] = row.multiplier();
+                outputCounts[r] = row.outputCount();
+                inputStart[r] = next;
+                for (int i = 0; i < row.inputs().length; i++) {
+                    inputNames[next] = intern(row.inputs()[i]);
+                    inputCounts[next] = row.inputCounts()[i];
+                    inputValues[next] = row.inputValues()[i];
+                    next++;
+                }
+            }
+            inputStart[count] = next;
+
+            return new EMCProvenance(strings.toArray(new String[0]), itemNames, sources, values, recipeNames,
+                recipeTypes, multipliers, outputCounts, inputStart, inputNames, inputCounts, inputValues);
+        }
+    }
+}
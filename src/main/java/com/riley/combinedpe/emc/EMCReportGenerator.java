@@ -2,17 +2,22 @@ package com.riley.combinedpe.emc;
 
 import com.riley.combinedpe.CombinedPE;
 import net.minecraft.core.registries.BuiltInRegistries;
-import net.minecraft.world.item.Item;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Generates detailed reports of EMC value assignments
@@ -23,11 +28,72 @@ import java.util.stream.Collectors;
  * - Config overrides applied
  * - Blacklisted items
  * - Scan performance metrics
+ *
+ * Reports are written on their own background thread, in any of the configured formats
+ * ({@link Format}). Item IDs are resolved once into sortable rows, then every format streams
+ * the same rows straight to disk. Only the last report_retention reports are kept.
  */
 public class EMCReportGenerator {
 
+    private static final Path REPORTS_DIR = Paths.get("config", "combinedpe", "reports");
+    private static final String REPORT_PREFIX = "emc_report_";
+    private static final String PROFILE_EXTENSION = ".profile.txt";
+
     private static final DateTimeFormatter TIMESTAMP_FORMAT =
         DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter FILE_TIMESTAMP_FORMAT =
+        DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss_SSS");
+
+    private static final String RULE = "=".repeat(70);
+    private static final String LINE = "-".repeat(70);
+
+    /**
+     * Single background thread writing reports, so a large report never delays a scan
+     */
+    private static final ExecutorService REPORT_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "CombinedPE-EMC-Report");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /**
+     * Report output formats
+     */
+    public enum Format {
+        TEXT("text", ".txt"),
+        CSV("csv", ".csv"),
+        NDJSON("ndjson", ".ndjson.gz");
+
+        private final String name;
+        private final String extension;
+
+        Format(String name, String extension) {
+            this.name = name;
+            this.extension = extension;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * Find a format by its config name
+         * @return Format, or null if unknown
+         */
+        public static Format byName(String name) {
+            for (Format format : values()) {
+                if (format.name.equalsIgnoreCase(name)) {
+                    return format;
+                }
+            }
+            return null;
+        }
+    }
 
     /**
      * Report data container
@@ -40,154 +106,337 @@ public class EMCReportGenerator {
         public int overriddenEMC;
         public int recipeBasedEMC;
         public int tagBasedEMC;
+        public int firstMatchChanges = -1;
         public long scanDurationMs;
 
-        public Map<Item, Double> discoveredEMC;
+        public EMCStore.Snapshot values;
         public Map<String, Long> configOverrides;
         public List<String> blacklistedItemIds;
 
-        // Track source of each EMC value
-        public Map<Item, String> emcSources = new HashMap<>();
+        // Profile of the scan, written next to the report (null to skip)
+        public ScanProfiler profile;
     }
 
     /**
-     * Generate and save EMC report to file
+     * One discovered value, with its item ID resolved once for sorting and writing
+     */
+    private record Row(String itemId, double value, EMCSource source) {}
+
+    /**
+     * Generate the report on the report thread
+     * @param data Report data from scanning (must not be modified afterwards)
+     * @param formats Formats to write
+     * @param retention Number of reports to keep (0 = keep all)
+     */
+    public static void generateReportAsync(ReportData data, Set<Format> formats, int retention) {
+        REPORT_EXECUTOR.execute(() -> generateReport(data, formats, retention));
+    }
+
+    /**
+     * Generate and save the EMC report in every given format
      * @param data Report data from scanning
-     * @return Path to generated report file
+     * @param formats Formats to write
+     * @param retention Number of reports to keep (0 = keep all)
+     * @return Paths of the generated report files
      */
-    public static Path generateReport(ReportData data) {
+    public static List<Path> generateReport(ReportData data, Set<Format> formats, int retention) {
+        List<Path> reportFiles = new ArrayList<>();
         try {
-            // Create reports directory if it doesn't exist
-            Path reportsDir = Paths.get("config", "combinedpe", "reports");
-            Files.createDirectories(reportsDir);
+            Files.createDirectories(REPORTS_DIR);
 
-            // Generate filename with timestamp
-            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-            Path reportFile = reportsDir.resolve("emc_report_" + timestamp + ".txt");
+            long startTime = System.currentTimeMillis();
+            long startNanos = System.nanoTime();
+            LocalDateTime now = LocalDateTime.now();
+            String baseName = uniqueBaseName(REPORT_PREFIX + now.format(FILE_TIMESTAMP_FORMAT), formats);
+            Row[] rows = collectRows(data.values);
 
-            // Write report
-            try (BufferedWriter writer = Files.newBufferedWriter(reportFile)) {
-                writeReport(writer, data);
+            for (Format format : formats) {
+                Path reportFile = REPORTS_DIR.resolve(baseName + format.getExtension());
+                try {
+                    switch (format) {
+                        case TEXT -> {
+                            try (Writer writer = Files.newBufferedWriter(reportFile)) {
+                                writeText(writer, data, rows, now);
+                            }
+                        }
+                        case CSV -> {
+                            try (Writer writer = Files.newBufferedWriter(reportFile)) {
+                                writeCsv(writer, rows);
+                            }
+                        }
+                        case NDJSON -> {
+                            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                                    new GZIPOutputStream(Files.newOutputStream(reportFile), 1 << 16),
+                                    StandardCharsets.UTF_8))) {
+                                writeNdjson(writer, data, rows, now);
+                            }
+                        }
+                    }
+                    reportFiles.add(reportFile);
+                } catch (IOException e) {
+                    CombinedPE.LOGGER.error("Failed to write {} EMC report", format.getName(), e);
+                }
             }
 
-            CombinedPE.LOGGER.info("EMC report generated: {}", reportFile.toAbsolutePath());
-            return reportFile;
+            CombinedPE.LOGGER.info("EMC report generated in {}ms: {}",
+                System.currentTimeMillis() - startTime, reportFiles);
+
+            // Shares the report's timestamp, so retention prunes it with the report
+            if (data.profile != null) {
+                data.profile.addPhase(ScanProfiler.Phase.REPORT, System.nanoTime() - startNanos);
+                Path profileFile = REPORTS_DIR.resolve(baseName + PROFILE_EXTENSION);
+                data.profile.writeTo(profileFile);
+                reportFiles.add(profileFile);
+            }
+
+            if (retention > 0) {
+                pruneReports(retention);
+            }
 
         } catch (IOException e) {
             CombinedPE.LOGGER.error("Failed to generate EMC report", e);
-            return null;
         }
+        return reportFiles;
+    }
+
+    /**
+     * Resolve each value's item ID once and sort by it
+     */
+    private static Row[] collectRows(EMCStore.Snapshot values) {
+        Row[] rows = new Row[values.size()];
+        int[] index = new int[1];
+        values.forEach((item, value, source) ->
+            rows[index[0]++] = new Row(BuiltInRegistries.ITEM.getKey(item).toString(), value, source));
+
+        Row[] filled = index[0] == rows.length ? rows : Arrays.copyOf(rows, index[0]);
+        Arrays.sort(filled, Comparator.comparing(Row::itemId));
+        return filled;
     }
 
     /**
-     * Write report content to writer
+     * Write the human-readable report
      */
-    private static void writeReport(BufferedWriter writer, ReportData data) throws IOException {
-        String timestamp = LocalDateTime.now().format(TIMESTAMP_FORMAT);
+    private static void writeText(Writer writer, ReportData data, Row[] rows, LocalDateTime now) throws IOException {
+        StringBuilder line = new StringBuilder(128);
 
         // Header
-        writer.write("=".repeat(70));
-        writer.newLine();
-        writer.write("CombinedPE Dynamic EMC Report");
-        writer.newLine();
-        writer.write("=".repeat(70));
-        writer.newLine();
-        writer.write("Generated: " + timestamp);
-        writer.newLine();
-        writer.write("Scan Duration: " + data.scanDurationMs + "ms");
-        writer.newLine();
-        writer.newLine();
+        writeLine(writer, RULE);
+        writeLine(writer, "CombinedPE Dynamic EMC Report");
+        writeLine(writer, RULE);
+        writeLine(writer, "Generated: " + now.format(TIMESTAMP_FORMAT));
+        writeLine(writer, "Scan Duration: " + data.scanDurationMs + "ms");
+        writeLine(writer, "");
 
         // Summary Section
-        writer.write("SUMMARY");
-        writer.newLine();
-        writer.write("-".repeat(70));
-        writer.newLine();
-        writer.write(String.format("Total items scanned:        %d", data.totalItems));
-        writer.newLine();
-        writer.write(String.format("Items with existing EMC:    %d", data.itemsWithExistingEMC));
-        writer.newLine();
-        writer.write(String.format("Blacklisted items:          %d", data.blacklistedItems));
-        writer.newLine();
-        writer.write(String.format("New EMC values discovered:  %d", data.newEMCAssignments));
-        writer.newLine();
-        writer.write(String.format("  - From config overrides:  %d", data.overriddenEMC));
-        writer.newLine();
-        writer.write(String.format("  - From recipes:           %d", data.recipeBasedEMC));
-        writer.newLine();
-        writer.write(String.format("  - From tags:              %d", data.tagBasedEMC));
-        writer.newLine();
-        writer.newLine();
+        writeLine(writer, "SUMMARY");
+        writeLine(writer, LINE);
+        writeLine(writer, "Total items scanned:        " + data.totalItems);
+        writeLine(writer, "Items with existing EMC:    " + data.itemsWithExistingEMC);
+        writeLine(writer, "Blacklisted items:          " + data.blacklistedItems);
+        writeLine(writer, "New EMC values discovered:  " + data.newEMCAssignments);
+        writeLine(writer, "  - From config overrides:  " + data.overriddenEMC);
+        writeLine(writer, "  - From recipes:           " + data.recipeBasedEMC);
+        writeLine(writer, "  - From tags:              " + data.tagBasedEMC);
+        if (data.firstMatchChanges >= 0) {
+            writeLine(writer, "Changed vs first-match:     " + data.firstMatchChanges);
+        }
+        writeLine(writer, "");
 
         // Config Overrides Section
         if (!data.configOverrides.isEmpty()) {
-            writer.write("CONFIG OVERRIDES APPLIED");
-            writer.newLine();
-            writer.write("-".repeat(70));
-            writer.newLine();
-
-            // Sort by item ID for readability
-            List<Map.Entry<String, Long>> sortedOverrides = new ArrayList<>(data.configOverrides.entrySet());
-            sortedOverrides.sort(Map.Entry.comparingByKey());
-
-            for (Map.Entry<String, Long> entry : sortedOverrides) {
-                writer.write(String.format("%-50s = %d", entry.getKey(), entry.getValue()));
-                writer.newLine();
+            writeLine(writer, "CONFIG OVERRIDES APPLIED");
+            writeLine(writer, LINE);
+
+            // Sort by rule for readability
+            for (Map.Entry<String, Long> entry : new TreeMap<>(data.configOverrides).entrySet()) {
+                line.setLength(0);
+                padRight(line, entry.getKey(), 50).append(" = ").append(entry.getValue());
+                writeLine(writer, line);
             }
-            writer.newLine();
+            writeLine(writer, "");
         }
 
         // Blacklisted Items Section
         if (!data.blacklistedItemIds.isEmpty()) {
-            writer.write("BLACKLISTED ITEMS");
-            writer.newLine();
-            writer.write("-".repeat(70));
-            writer.newLine();
-
-            List<String> sortedBlacklist = new ArrayList<>(data.blacklistedItemIds);
-            Collections.sort(sortedBlacklist);
+            writeLine(writer, "BLACKLISTED ITEMS");
+            writeLine(writer, LINE);
 
+            String[] sortedBlacklist = data.blacklistedItemIds.toArray(new String[0]);
+            Arrays.sort(sortedBlacklist);
             for (String itemId : sortedBlacklist) {
-                writer.write(itemId);
-                writer.newLine();
+                writeLine(writer, itemId);
             }
-            writer.newLine();
+            writeLine(writer, "");
         }
 
         // Discovered EMC Values Section
-        writer.write("DISCOVERED EMC VALUES");
-        writer.newLine();
-        writer.write("-".repeat(70));
-        writer.newLine();
-        writer.write(String.format("%-50s %10s  %s", "Item", "EMC", "Source"));
-        writer.newLine();
-        writer.write("-".repeat(70));
-        writer.newLine();
-
-        // Sort by item ID
-        List<Map.Entry<Item, Double>> sortedEMC = data.discoveredEMC.entrySet().stream()
-            .sorted((a, b) -> {
-                String idA = BuiltInRegistries.ITEM.getKey(a.getKey()).toString();
-                String idB = BuiltInRegistries.ITEM.getKey(b.getKey()).toString();
-                return idA.compareTo(idB);
-            })
-            .collect(Collectors.toList());
-
-        for (Map.Entry<Item, Double> entry : sortedEMC) {
-            Item item = entry.getKey();
-            double emcValue = entry.getValue();
-            long roundedEMC = Math.round(emcValue);
-            String itemId = BuiltInRegistries.ITEM.getKey(item).toString();
-            String source = data.emcSources.getOrDefault(item, "unknown");
-
-            writer.write(String.format("%-50s %10d  %s", itemId, roundedEMC, source));
-            writer.newLine();
-        }
-
-        writer.newLine();
-        writer.write("=".repeat(70));
-        writer.newLine();
-        writer.write("End of Report");
-        writer.newLine();
+        writeLine(writer, "DISCOVERED EMC VALUES");
+        writeLine(writer, LINE);
+        line.setLength(0);
+        padLeft(padRight(line, "Item", 50).append(' '), "EMC", 10).append("  Source");
+        writeLine(writer, line);
+        writeLine(writer, LINE);
+
+        for (Row row : rows) {
+            line.setLength(0);
+            padRight(line, row.itemId(), 50).append(' ');
+            padLeft(line, Long.toString(Math.round(row.value())), 10).append("  ").append(row.source().getName());
+            writeLine(writer, line);
+        }
+
+        writeLine(writer, "");
+        writeLine(writer, RULE);
+        writeLine(writer, "End of Report");
+    }
+
+    /**
+     * Write one CSV row per discovered value (item IDs never contain commas or quotes)
+     */
+    private static void writeCsv(Writer writer, Row[] rows) throws IOException {
+        writeLine(writer, "item,emc,value,source");
+
+        StringBuilder line = new StringBuilder(96);
+        for (Row row : rows) {
+            line.setLength(0);
+            line.append(row.itemId()).append(',')
+                .append(Math.round(row.value())).append(',')
+                .append(row.value()).append(',')
+                .append(row.source().getName());
+            writeLine(writer, line);
+        }
+    }
+
+    /**
+     * Write a summary object followed by one object per discovered value
+     */
+    private static void writeNdjson(Writer writer, ReportData data, Row[] rows, LocalDateTime now) throws IOException {
+        StringBuilder line = new StringBuilder(256);
+        line.append("{\"type\":\"summary\",\"generated\":");
+        appendJsonString(line, now.format(TIMESTAMP_FORMAT));
+        line.append(",\"scanDurationMs\":").append(data.scanDurationMs)
+            .append(",\"totalItems\":").append(data.totalItems)
+            .append(",\"itemsWithExistingEMC\":").append(data.itemsWithExistingEMC)
+            .append(",\"blacklistedItems\":").append(data.blacklistedItems)
+            .append(",\"newEMCAssignments\":").append(data.newEMCAssignments)
+            .append(",\"overriddenEMC\":").append(data.overriddenEMC)
+            .append(",\"recipeBasedEMC\":").append(data.recipeBasedEMC)
+            .append(",\"tagBasedEMC\":").append(data.tagBasedEMC)
+            .append(",\"firstMatchChanges\":").append(data.firstMatchChanges)
+            .append('}');
+        writeLine(writer, line);
+
+        for (Map.Entry<String, Long> entry : new TreeMap<>(data.configOverrides).entrySet()) {
+            line.setLength(0);
+            line.append("{\"type\":\"override\",\"rule\":");
+            appendJsonString(line, entry.getKey());
+            line.append(",\"emc\":").append(entry.getValue()).append('}');
+            writeLine(writer, line);
+        }
+
+        for (String itemId : data.blacklistedItemIds) {
+            line.setLength(0);
+            line.append("{\"type\":\"blacklisted\",\"item\":");
+            appendJsonString(line, itemId);
+            line.append('}');
+            writeLine(writer, line);
+        }
+
+        for (Row row : rows) {
+            line.setLength(0);
+            line.append("{\"type\":\"value\",\"item\":");
+            appendJsonString(line, row.itemId());
+            line.append(",\"emc\":").append(Math.round(row.value()))
+                .append(",\"value\":").append(row.value())
+                .append(",\"source\":\"").append(row.source().getName()).append("\"}");
+            writeLine(writer, line);
+        }
+    }
+
+    /**
+     * Append a sequence number if a report with this base name already exists
+     * Reports are written by one thread, so checking for existing files is enough.
+     */
+    private static String uniqueBaseName(String baseName, Set<Format> formats) {
+        String candidate = baseName;
+        for (int sequence = 1; isTaken(candidate, formats); sequence++) {
+            candidate = baseName + "_" + sequence;
+        }
+        return candidate;
+    }
+
+    private static boolean isTaken(String baseName, Set<Format> formats) {
+        if (Files.exists(REPORTS_DIR.resolve(baseName + PROFILE_EXTENSION))) {
+            return true;
+        }
+        for (Format format : formats) {
+            if (Files.exists(REPORTS_DIR.resolve(baseName + format.getExtension()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Delete all but the newest reports (every format of one report shares its timestamp)
+     */
+    private static void pruneReports(int retention) {
+        try (Stream<Path> files = Files.list(REPORTS_DIR)) {
+            // Timestamps sort chronologically as strings
+            TreeMap<String, List<Path>> reports = new TreeMap<>(Comparator.reverseOrder());
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                if (name.startsWith(REPORT_PREFIX)) {
+                    int end = name.indexOf('.');
+                    String stamp = end < 0 ? name : name.substring(0, end);
+                    reports.computeIfAbsent(stamp, k -> new ArrayList<>()).add(file);
+                }
+            });
+
+            int kept = 0;
+            for (List<Path> report : reports.values()) {
+                if (kept++ < retention) {
+                    continue;
+                }
+                for (Path file : report) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            CombinedPE.LOGGER.warn("Failed to prune old EMC reports", e);
+        }
+    }
+
+    private static void writeLine(Writer writer, CharSequence line) throws IOException {
+        writer.append(line).append('\n');
+    }
+
+    private static StringBuilder padRight(StringBuilder builder, String value, int width) {
+        builder.append(value);
+        for (int i = value.length(); i < width; i++) {
+            builder.append(' ');
+        }
+        return builder;
+    }
+
+    private static StringBuilder padLeft(StringBuilder builder, String value, int width) {
+        for (int i = value.length(); i < width; i++) {
+            builder.append(' ');
+        }
+        return builder.append(value);
+    }
+
+    private static void appendJsonString(StringBuilder builder, String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        builder.append('"');
     }
 }
@@ -0,0 +1,91 @@
+package com.riley.combinedpe.emc;
+
+import com.riley.combinedpe.CombinedPE;
+
+import java.util.List;
+
+/**
+ * Override and blacklist rules compiled from the config
+ *
+ * Compiled once per config load (see Config.getRules), so scans never re-parse the raw entries.
+ * Invalid entries are logged once, when the config is compiled.
+ */
+public final class EMCRules {
+
+    public static final EMCRules EMPTY = new EMCRules(ItemRuleSet.EMPTY, ItemRuleSet.EMPTY);
+
+    private final ItemRuleSet overrides;
+    private final ItemRuleSet blacklist;
+
+    private EMCRules(ItemRuleSet overrides, ItemRuleSet blacklist) {
+        this.overrides = overrides;
+        this.blacklist = blacklist;
+    }
+
+    /**
+     * Compile the raw config entries
+     * @param overrideEntries Entries in the form "rule=emc_value"
+     * @param blacklistEntries Blacklist rules
+     */
+    public static EMCRules compile(List<? extends String> overrideEntries, List<? extends String> blacklistEntries) {
+        ItemRuleSet.Builder overrides = new ItemRuleSet.Builder();
+        for (String entry : overrideEntries) {
+            if (entry == null || entry.trim().isEmpty()) {
+                continue;
+            }
+
+            // Parse format: "rule=emc_value"
+            String[] parts = entry.split("=", 2);
+            if (parts.length != 2) {
+                overrides.invalid(entry, "expected 'item=value'");
+                continue;
+            }
+
+            try {
+                long emcValue = Long.parseLong(parts[1].trim());
+                if (emcValue < 0) {
+                    overrides.invalid(entry, "EMC value must not be negative");
+                    continue;
+                }
+                overrides.add(parts[0], emcValue);
+            } catch (NumberFormatException e) {
+                overrides.invalid(entry, "invalid EMC value");
+            }
+        }
+
+        ItemRuleSet.Builder blacklist = new ItemRuleSet.Builder();
+        for (String entry : blacklistEntries) {
+            if (entry == null || entry.trim().isEmpty()) {
+                continue;
+            }
+            blacklist.add(entry, 1L);
+        }
+
+        EMCRules rules = new EMCRules(overrides.build(), blacklist.build());
+
+        for (String invalid : rules.overrides.getInvalidEntries()) {
+            CombinedPE.LOGGER.warn("Ignoring invalid EMC override {}", invalid);
+        }
+        for (String invalid : rules.blacklist.getInvalidEntries()) {
+            CombinedPE.LOGGER.warn("Ignoring invalid blacklist entry {}", invalid);
+        }
+        CombinedPE.LOGGER.debug("Compiled {} EMC override rules and {} blacklist rules",
+            rules.overrides.getEntries().size(), rules.blacklist.getEntries().size());
+
+        return rules;
+    }
+
+    /**
+     * Override rules; rule values are EMC values
+     */
+    public ItemRuleSet getOverrides() {
+        return overrides;
+    }
+
+    /**
+     * Blacklist rules; any match means blacklisted
+     */
+    public ItemRuleSet getBlacklist() {
+        return blacklist;
+    }
+}
@@ -0,0 +1,221 @@
+package com.riley.combinedpe.emc;
+
+import com.riley.combinedpe.CombinedPE;
+import com.riley.combinedpe.Config;
+import com.riley.combinedpe.integration.projecte.ProjectECompat;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.item.Item;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.event.OnDatapackSyncEvent;
+import net.neoforged.neoforge.event.server.ServerStartingEvent;
+import net.neoforged.neoforge.event.server.ServerStoppingEvent;
+
+/**
+ * Decides when EMC values are loaded or scanned, once per server rather than once per dimension
+ *
+ * Triggers:
+ * - Server starting (all dimensions are loaded by then)
+ * - Datapack reload (/reload), which can change recipes and tags
+ * - /combinedpe rescan (always scans, skipping the cache)
+ * - /combinedpe setemc and clearemc (re-solve the retained recipe graph, or scan if that is not possible),
+ *   followed by a datapack reload so ProjectE remaps with the new values
+ * - Precompute run (-Dcombinedpe.precompute=true): scan, write the pack artifact and stop the server
+ *
+ * Each trigger runs at most one cache load or scan. Triggers that arrive while a scan is
+ * running are coalesced into a single follow-up run once it finishes.
+ * All methods run on the server thread.
+ */
+@EventBusSubscriber(modid = CombinedPE.MOD_ID)
+public class EMCScanCoordinator {
+
+    /**
+     * What asked for a scan
+     */
+    public enum Trigger {
+        SERVER_START("server start"),
+        DATAPACK_RELOAD("datapack reload"),
+        RESCAN_COMMAND("rescan command"),
+        OVERRIDE_COMMAND("runtime override"),
+        PRECOMPUTE("precompute run");
+
+        private final String description;
+
+        Trigger(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private static boolean running;
+
+    // Trigger waiting for the running scan to finish (null if none)
+    private static Trigger pendingTrigger;
+    private static boolean pendingForceScan;
+
+    // Set while a datapack reload we started is running, so it does not trigger a scan of its own
+    private static boolean selfReload;
+
+    @SubscribeEvent
+    public static void onServerStarting(ServerStartingEvent event) {
+        if (EMCPrecompute.isEnabled()) {
+            CombinedPE.LOGGER.info("EMC precompute run: scanning, then stopping the server");
+            if (!request(event.getServer(), Trigger.PRECOMPUTE, true)) {
+                CombinedPE.LOGGER.error("EMC precompute run could not scan (dynamic EMC disabled or ProjectE missing)");
+                event.getServer().halt(false);
+            }
+            return;
+        }
+
+        if (!Config.SCAN_ON_WORLD_LOAD.get()) {
+            CombinedPE.LOGGER.info("World load EMC scan disabled in config");
+            return;
+        }
+
+        request(event.getServer(), Trigger.SERVER_START, false);
+    }
+
+    /**
+     * Fired with a null player once for the whole server after /reload
+     * (and once per player when they join, which we ignore)
+     */
+    @SubscribeEvent
+    public static void onDatapackSync(OnDatapackSyncEvent event) {
+        if (event.getPlayer() != null) {
+            return;
+        }
+        if (selfReload) {
+            selfReload = false;
+            return;
+        }
+        if (!Config.SCAN_ON_WORLD_LOAD.get()) {
+            return;
+        }
+
+        request(event.getPlayerList().getServer(), Trigger.DATAPACK_RELOAD, false);
+    }
+
+    @SubscribeEvent
+    public static void onServerStopping(ServerStoppingEvent event) {
+        running = false;
+        pendingTrigger = null;
+        pendingForceScan = false;
+        selfReload = false;
+    }
+
+    /**
+     * Force a full re-scan (from the rescan command)
+     * @return true if the scan started now, false if it was queued behind a running scan
+     */
+    public static boolean requestRescan(MinecraftServer server) {
+        return request(server, Trigger.RESCAN_COMMAND, true);
+    }
+
+    /**
+     * Apply a changed runtime override (from the setemc and clearemc commands)
+     * Once the new values are published, datapacks are reloaded so ProjectE registers them.
+     * @param value New override value, or -1 if the override was removed
+     * @return Number of values that changed if applied right away, or -1 if a scan was started or queued
+     */
+    public static int applyOverride(MinecraftServer server, Item item, long value) {
+        if (!running && value >= 0 && Config.DYNAMIC_EMC_ENABLED.get()) {
+            int changed = DynamicEMCMapper.applyOverride(server, item, value);
+            if (changed >= 0) {
+                if (changed > 0) {
+                    reloadProjectE(server);
+                }
+                return changed;
+            }
+        }
+
+        // The fingerprint covers runtime overrides, so this misses the cache and scans (incrementally if possible)
+        request(server, Trigger.OVERRIDE_COMMAND, false);
+        return -1;
+    }
+
+    /**
+     * Reload datapacks so ProjectE remaps EMC with the published values
+     * ProjectE only runs its mappers (CombinedPEMapper included) on a datapack reload. Recipes
+     * and tags are unchanged, so the reload does not trigger a scan.
+     */
+    private static void reloadProjectE(MinecraftServer server) {
+        CombinedPE.LOGGER.info("Reloading datapacks so ProjectE registers the new EMC values");
+        selfReload = true;
+        server.reloadResources(server.getPackRepository().getSelectedIds())
+            .exceptionally(error -> {
+                CombinedPE.LOGGER.error("Datapack reload for new EMC values failed, run /reload to apply them", error);
+                server.execute(() -> selfReload = false);
+                return null;
+            });
+    }
+
+    /**
+     * Check if a cache load or scan is in progress
+     */
+    public static boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Run a cache load or scan now, or queue it behind the running one
+     * @return true if it started now
+     */
+    private static boolean request(MinecraftServer server, Trigger trigger, boolean forceScan) {
+        if (!Config.DYNAMIC_EMC_ENABLED.get()) {
+            return false;
+        }
+
+        if (!ProjectECompat.isProjectELoaded()) {
+            CombinedPE.LOGGER.warn("ProjectE not loaded, skipping EMC calculation");
+            return false;
+        }
+
+        if (running) {
+            CombinedPE.LOGGER.info("EMC scan already running, {} will run once it finishes", trigger.getDescription());
+            pendingTrigger = trigger;
+            pendingForceScan |= forceScan;
+            return false;
+        }
+
+        CombinedPE.LOGGER.info("Loading EMC values (triggered by {})", trigger.getDescription());
+        running = true;
+
+        try {
+            DynamicEMCMapper.loadOrScan(server, forceScan)
+                .whenComplete((result, error) -> {
+                    if (trigger == Trigger.PRECOMPUTE) {
+                        EMCPrecompute.finish(server);
+                    } else if (trigger == Trigger.OVERRIDE_COMMAND && error == null && running) {
+                        reloadProjectE(server);
+                    }
+                    finished(server);
+                });
+        } catch (Exception e) {
+            CombinedPE.LOGGER.error("Failed to start EMC scan", e);
+            running = false;
+        }
+        return true;
+    }
+
+    /**
+     * Run the coalesced follow-up trigger, if any
+     */
+    private static void finished(MinecraftServer server) {
+        if (!running) {
+            // Server stopped meanwhile
+            return;
+        }
+        running = false;
+
+        Trigger trigger = pendingTrigger;
+        if (trigger != null) {
+            boolean forceScan = pendingForceScan;
+            pendingTrigger = null;
+            pendingForceScan = false;
+            request(server, trigger, forceScan);
+        }
+    }
+}
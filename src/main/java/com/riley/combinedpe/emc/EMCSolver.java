@@ -0,0 +1,786 @@
+package com.riley.combinedpe.emc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Worklist fixed-point solver for recipe-based EMC values
+ *
+ * The recipe graph is expressed over integer node IDs:
+ * - Fixed nodes have a known value (e.g. from ProjectE) and never change
+ * - Recipes connect ingredient nodes to an output node
+ *
+ * Algorithm:
+ * 1. Seed the worklist with every fixed node
+ * 2. When a node is first resolved, count it off in every recipe that consumes it
+ * 3. Once all of a recipe's ingredients are resolved, evaluate the recipe and
+ *    lower the output's value if the recipe is cheaper than the current best
+ * 4. Nodes whose value changed are re-queued until nothing changes
+ * 5. Once the worklist is empty, unresolved tag members are inferred from their tags
+ *    (see below) and queued like any other value, which can complete more recipes;
+ *    this repeats until no node can be inferred. Members that a recipe could still reach
+ *    from another inferable member wait for a later round, so the recipe can value them first
+ *
+ * Tag rule: each tag keeps the sum and count of its members' fixed and recipe-derived values,
+ * updated as values resolve or drop. An unresolved node takes the median of the average values
+ * of its tags. Inferred values are final for the solve and do not count towards tag aggregates,
+ * so inference never feeds on itself. Recipes always win, since inference only runs once no
+ * recipe can complete.
+ *
+ * After a change, {@link #solveIncremental} re-solves only the nodes downstream of it.
+ * Solves can also be started and then run in slices ({@link #startSolve}, {@link #resume}),
+ * since all worklist state lives in fields between calls.
+ *
+ * The solver never recurses, so call depth is constant regardless of chain length.
+ * Cycles simply stop propagating once values settle instead of poisoning downstream
+ * items, and each node is re-queued at most {@link #MAX_UPDATES_PER_NODE} times so
+ * cycles with a net gain (multipliers below 1) still terminate.
+ */
+public class EMCSolver {
+
+    // Hard bound on how often a node's value may be lowered and re-propagated
+    static final int MAX_UPDATES_PER_NODE = 256;
+
+    // Improvements smaller than this fraction of the current value are ignored
+    private static final double RELATIVE_TOLERANCE = 1e-9;
+
+    /**
+     * Deadline for {@link #resume} that never passes
+     */
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    // Worklist steps between deadline checks in resume
+    private static final int DEADLINE_CHECK_INTERVAL = 256;
+
+    // Stages of a tag inference sweep, which can pause at a deadline like the worklist
+    private static final int SWEEP_IDLE = 0;
+    private static final int SWEEP_COLLECT = 1;
+    private static final int SWEEP_WALK = 2;
+    private static final int SWEEP_APPLY = 3;
+
+    private final int nodeCount;
+    private final double minValue;
+    private final double[] fixedValues;
+    private final List<SolverRecipe> recipes = new ArrayList<>();
+    private final List<int[]> tags = new ArrayList<>();
+
+    private double[] values;
+    private int[] bestRecipe;
+    private boolean[] inferred;
+    private long relaxations;
+    private int cappedNodes;
+    private int dirtyNodes;
+    private int inferredNodes;
+    private long inferenceNanos;
+
+    // Worklist state of the running solve (null when no solve is running)
+    private int[] consumerStart;
+    private int[] consumers;
+    private boolean[] dirty;
+    private int[] missing;
+    private int[] updates;
+    private boolean[] resolved;
+    private boolean[] inQueue;
+    private int[] queue;
+    private int head;
+    private int size;
+    private int steps;
+
+    // Tag rule state of the running solve: node -> tags (CSR), per-tag aggregates, counted value per node
+    private int[] nodeTagStart;
+    private int[] nodeTags;
+    private double[] tagSums;
+    private int[] tagCounts;
+    private double[] contributions;
+
+    // Tag inference state of the running solve: unresolved tagged nodes still waiting for a value
+    // and their tag value in the current sweep, plus the per-sweep marks and stack of the walk
+    private int[] pending;
+    private double[] pendingValues;
+    private int pendingCount;
+    private int[] candidateMarks;
+    private int[] reachedMarks;
+    private int[] stack;
+    private int stackTop;
+    private int sweep;
+    private int sweepStage;
+    private int sweepCursor;
+    private int sweepWrite;
+    private int candidateCount;
+    private int reachedCandidates;
+
+    /**
+     * A recipe edge in the solver graph
+     * @param output Output node
+     * @param outputCount Number of output items produced
+     * @param multiplier Multiplier applied to the summed ingredient cost
+     * @param inputs Distinct ingredient nodes
+     * @param inputCounts Amount consumed of each ingredient node
+     */
+    private record SolverRecipe(int output, int outputCount, double multiplier, int[] inputs, int[] inputCounts) {}
+
+    /**
+     * @param nodeCount Number of nodes in the graph (node IDs are 0 to nodeCount - 1)
+     * @param minValue Minimum value for any recipe-derived node
+     */
+    public EMCSolver(int nodeCount, double minValue) {
+        this.nodeCount = nodeCount;
+        this.minValue = minValue;
+        this.fixedValues = new double[nodeCount];
+    }
+
+    /**
+     * Give a node a fixed value that recipes cannot change
+     */
+    public void setFixedValue(int node, double value) {
+        fixedValues[node] = value;
+    }
+
+    /**
+     * Add a recipe to the graph
+     * @param output Output node
+     * @param outputCount Number of output items produced
+     * @param multiplier Multiplier applied to the summed ingredient cost
+     * @param inputs Ingredient nodes (may contain duplicates)
+     * @param inputCounts Amount consumed for each entry of inputs
+     * @return Recipe index, as reported by {@link #getBestRecipe(int)}
+     */
+    public int addRecipe(int output, int outputCount, double multiplier, int[] inputs, int[] inputCounts) {
+        // Merge duplicate ingredients so each node is counted off once per recipe
+        int[] distinct = new int[inputs.length];
+        int[] counts = new int[inputs.length];
+        int size = 0;
+
+        outer:
+        for (int i = 0; i < inputs.length; i++) {
+            for (int j = 0; j < size; j++) {
+                if (distinct[j] == inputs[i]) {
+                    counts[j] += inputCounts[i];
+                    continue outer;
+                }
+            }
+            distinct[size] = inputs[i];
+            counts[size] = inputCounts[i];
+            size++;
+        }
+
+        recipes.add(new SolverRecipe(output, outputCount, multiplier,
+            Arrays.copyOf(distinct, size), Arrays.copyOf(counts, size)));
+        return recipes.size() - 1;
+    }
+
+    /**
+     * Add a tag whose members can be inferred from each other
+     * @param members Member nodes (duplicates are ignored)
+     */
+    public void addTag(int[] members) {
+        tags.add(Arrays.stream(members).distinct().toArray());
+    }
+
+    /**
+     * Run the worklist until every value reaches a fixed point
+     */
+    public void solve() {
+        startSolve();
+        resume(NO_DEADLINE);
+    }
+
+    /**
+     * Start a full solve; {@link #resume} runs it
+     */
+    public void startSolve() {
+        boolean[] dirty = new boolean[nodeCount];
+        Arrays.fill(dirty, true);
+        dirtyNodes = nodeCount;
+
+        buildNodeTags();
+        begin(buildConsumers(), dirty, null, null, null);
+    }
+
+    /**
+     * Re-solve only what a change can affect, keeping every other value from a previous solve
+     *
+     * The dirty cone is every seed node plus everything reachable from one through recipes
+     * (node -> recipes consuming it -> their outputs). Nodes outside the cone do not depend
+     * on any change, so their previous values are still the fixed point and are kept as is.
+     * Through the tag rule, a node also reaches its tags' members that were unresolved or
+     * inferred, since their inference reads the node's value.
+     *
+     * @param previousValues Values of the previous solve, by node (nodes beyond its length are new)
+     * @param previousBestRecipe Best recipe of the previous solve, by node, as an index in this graph (-1 if none)
+     * @param previousInferred Nodes the previous solve inferred from tags
+     * @param seeds Nodes whose recipes, tags or fixed value changed, or that are new
+     */
+    public void solveIncremental(double[] previousValues, int[] previousBestRecipe, BitSet previousInferred,
+                                 int[] seeds) {
+        startIncremental(previousValues, previousBestRecipe, previousInferred, seeds);
+        resume(NO_DEADLINE);
+    }
+
+    /**
+     * Start an incremental solve (see {@link #solveIncremental}); {@link #resume} runs it
+     */
+    public void startIncremental(double[] previousValues, int[] previousBestRecipe, BitSet previousInferred,
+                                 int[] seeds) {
+        int[][] csr = buildConsumers();
+        int[] consumerStart = csr[0];
+        int[] consumers = csr[1];
+        buildNodeTags();
+
+        // Forward closure of the seeds
+        boolean[] dirty = new boolean[nodeCount];
+        int[] stack = new int[Math.max(nodeCount, 1)];
+        int top = 0;
+        dirtyNodes = 0;
+        for (int seed : seeds) {
+            if (!dirty[seed]) {
+                dirty[seed] = true;
+                dirtyNodes++;
+                stack[top++] = seed;
+            }
+        }
+        while (top > 0) {
+            int node = stack[--top];
+            for (int c = consumerStart[node]; c < consumerStart[node + 1]; c++) {
+                int output = recipes.get(consumers[c]).output();
+                if (!dirty[output]) {
+                    dirty[output] = true;
+                    dirtyNodes++;
+                    stack[top++] = output;
+                }
+            }
+            for (int t = nodeTagStart[node]; t < nodeTagStart[node + 1]; t++) {
+                for (int member : tags.get(nodeTags[t])) {
+                    if (!dirty[member] && fixedValues[member] <= 0.0 && (member >= previousValues.length
+                            || previousValues[member] <= 0.0 || previousInferred.get(member))) {
+                        dirty[member] = true;
+                        dirtyNodes++;
+                        stack[top++] = member;
+                    }
+                }
+            }
+        }
+
+        begin(csr, dirty, previousValues, previousBestRecipe, previousInferred);
+    }
+
+    /**
+     * Build the node -> tags lists in CSR form
+     */
+    private void buildNodeTags() {
+        nodeTagStart = new int[nodeCount + 1];
+        for (int[] members : tags) {
+            for (int member : members) {
+                nodeTagStart[member + 1]++;
+            }
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            nodeTagStart[i + 1] += nodeTagStart[i];
+        }
+        nodeTags = new int[nodeTagStart[nodeCount]];
+        int[] fill = Arrays.copyOf(nodeTagStart, nodeCount);
+        for (int t = 0; t < tags.size(); t++) {
+            for (int member : tags.get(t)) {
+                nodeTags[fill[member]++] = t;
+            }
+        }
+    }
+
+    /**
+     * Build consumer lists (node -> recipes that use it) in CSR form
+     * @return {consumerStart, consumers}
+     */
+    private int[][] buildConsumers() {
+        int recipeCount = recipes.size();
+
+        int[] consumerStart = new int[nodeCount + 1];
+        for (SolverRecipe recipe : recipes) {
+            for (int input : recipe.inputs()) {
+                consumerStart[input + 1]++;
+            }
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            consumerStart[i + 1] += consumerStart[i];
+        }
+        int[] consumers = new int[consumerStart[nodeCount]];
+        int[] fill = Arrays.copyOf(consumerStart, nodeCount);
+        for (int r = 0; r < recipeCount; r++) {
+            for (int input : recipes.get(r).inputs()) {
+                consumers[fill[input]++] = r;
+            }
+        }
+
+        return new int[][] {consumerStart, consumers};
+    }
+
+    /**
+     * Set up a solve of the dirty nodes, treating every other node as already solved
+     */
+    private void begin(int[][] csr, boolean[] dirty, double[] previousValues, int[] previousBestRecipe,
+                       BitSet previousInferred) {
+        consumerStart = csr[0];
+        consumers = csr[1];
+        this.dirty = dirty;
+        int recipeCount = recipes.size();
+
+        values = new double[nodeCount];
+        bestRecipe = new int[nodeCount];
+        Arrays.fill(bestRecipe, -1);
+        inferred = new boolean[nodeCount];
+        relaxations = 0;
+        cappedNodes = 0;
+        inferredNodes = 0;
+        inferenceNanos = 0;
+
+        tagSums = new double[tags.size()];
+        tagCounts = new int[tags.size()];
+        contributions = new double[nodeCount];
+
+        updates = new int[nodeCount];
+        resolved = new boolean[nodeCount];
+        inQueue = new boolean[nodeCount];
+
+        // Clean nodes keep their previous value; a value means the node was resolved
+        for (int node = 0; node < nodeCount; node++) {
+            if (!dirty[node] && previousValues != null && node < previousValues.length) {
+                values[node] = previousValues[node];
+                bestRecipe[node] = previousBestRecipe[node];
+                inferred[node] = previousInferred != null && previousInferred.get(node);
+                resolved[node] = values[node] > 0.0;
+                updateTags(node);
+            }
+        }
+
+        missing = new int[recipeCount];
+        for (int r = 0; r < recipeCount; r++) {
+            for (int input : recipes.get(r).inputs()) {
+                if (!resolved[input]) {
+                    missing[r]++;
+                }
+            }
+        }
+
+        // Each node is queued at most once at a time, so a ring of nodeCount slots is enough
+        queue = new int[Math.max(nodeCount, 1)];
+        head = 0;
+        size = 0;
+
+        for (int node = 0; node < nodeCount; node++) {
+            if (dirty[node] && fixedValues[node] > 0.0) {
+                values[node] = fixedValues[node];
+                updateTags(node);
+                enqueue(node);
+            }
+        }
+
+        // Candidates for tag inference; nodes drop out as they get a value
+        pendingCount = 0;
+        pending = new int[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            if (dirty[node] && fixedValues[node] <= 0.0 && nodeTagStart[node] < nodeTagStart[node + 1]) {
+                pending[pendingCount++] = node;
+            }
+        }
+        pending = Arrays.copyOf(pending, pendingCount);
+        pendingValues = new double[pendingCount];
+        sweep = 0;
+        sweepStage = SWEEP_IDLE;
+
+        // Recipes into dirty nodes whose ingredients are all clean and solved never get
+        // a queued ingredient, so evaluate them once up front
+        for (int r = 0; r < recipeCount; r++) {
+            SolverRecipe recipe = recipes.get(r);
+            int output = recipe.output();
+            if (missing[r] == 0 && recipe.inputs().length > 0 && dirty[output] && fixedValues[output] <= 0.0
+                    && !inferred[output]) {
+                for (int input : recipe.inputs()) {
+                    if (dirty[input]) {
+                        // Has a dirty ingredient, handled when that ingredient is dequeued
+                        recipe = null;
+                        break;
+                    }
+                }
+                if (recipe != null && relax(r, recipe)) {
+                    enqueue(output);
+                }
+            }
+        }
+    }
+
+    /**
+     * Run the started solve until it is finished or the deadline passes
+     * Worklist state is kept between calls, so a solve can be spread over several server ticks.
+     * @param deadline {@link System#nanoTime()} at which to pause, or {@link #NO_DEADLINE}
+     * @return true once the solve is finished (also if no solve was started)
+     */
+    public boolean resume(long deadline) {
+        if (queue == null) {
+            return true;
+        }
+
+        steps = 0;
+        while (true) {
+            while (size > 0) {
+                if (pastDeadline(deadline)) {
+                    return false;
+                }
+
+                int node = queue[head];
+                head = (head + 1) % queue.length;
+                size--;
+                inQueue[node] = false;
+
+                boolean firstVisit = !resolved[node];
+                resolved[node] = true;
+
+                for (int c = consumerStart[node]; c < consumerStart[node + 1]; c++) {
+                    int r = consumers[c];
+                    if (firstVisit) {
+                        missing[r]--;
+                    }
+                    if (missing[r] != 0) {
+                        continue;
+                    }
+
+                    SolverRecipe recipe = recipes.get(r);
+                    int output = recipe.output();
+                    if (fixedValues[output] > 0.0 || inferred[output]) {
+                        continue;
+                    }
+
+                    if (relax(r, recipe)) {
+                        enqueue(output);
+                    }
+                }
+            }
+
+            // No recipe can complete any more: infer what the tags can, and propagate that
+            long inferenceStart = System.nanoTime();
+            boolean swept = inferSweep(deadline);
+            inferenceNanos += System.nanoTime() - inferenceStart;
+            if (!swept) {
+                return false;
+            }
+
+            if (size == 0) {
+                break;
+            }
+        }
+
+        // Only the results are kept
+        consumerStart = null;
+        consumers = null;
+        dirty = null;
+        missing = null;
+        updates = null;
+        resolved = null;
+        inQueue = null;
+        queue = null;
+        nodeTagStart = null;
+        nodeTags = null;
+        tagSums = null;
+        tagCounts = null;
+        contributions = null;
+        pending = null;
+        pendingValues = null;
+        candidateMarks = null;
+        reachedMarks = null;
+        stack = null;
+        return true;
+    }
+
+    private boolean pastDeadline(long deadline) {
+        return ++steps % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() >= deadline;
+    }
+
+    /**
+     * Infer unresolved nodes from their tags and queue them
+     * A node that recipes could reach from another inferable node waits for a later sweep, since
+     * inferring that node first may complete a recipe into it, and recipes win over tags.
+     * If every candidate is reachable from another one (a cycle), all of them are inferred.
+     * The sweep only visits pending nodes and the unresolved part of the graph, and pauses at the deadline.
+     * @return true once the sweep is finished, false if it paused
+     */
+    private boolean inferSweep(long deadline) {
+        if (sweepStage == SWEEP_IDLE) {
+            if (pendingCount == 0) {
+                return true;
+            }
+            if (candidateMarks == null) {
+                candidateMarks = new int[nodeCount];
+                reachedMarks = new int[nodeCount];
+                stack = new int[nodeCount + 1];
+            }
+            sweep++;
+            sweepStage = SWEEP_COLLECT;
+            sweepCursor = 0;
+            sweepWrite = 0;
+            candidateCount = 0;
+            reachedCandidates = 0;
+            stackTop = 0;
+        }
+
+        if (sweepStage == SWEEP_COLLECT) {
+            // Compact out nodes that got a value since the last sweep, and read the others' tag values
+            while (sweepCursor < pendingCount) {
+                if (pastDeadline(deadline)) {
+                    return false;
+                }
+                int node = pending[sweepCursor++];
+                if (values[node] > 0.0) {
+                    continue;
+                }
+                double value = inferFromTags(node);
+                pending[sweepWrite] = node;
+                pendingValues[sweepWrite++] = value;
+                if (value > 0.0) {
+                    candidateMarks[node] = sweep;
+                    candidateCount++;
+                }
+            }
+            pendingCount = sweepWrite;
+            if (candidateCount == 0) {
+                sweepStage = SWEEP_IDLE;
+                return true;
+            }
+            sweepStage = SWEEP_WALK;
+            sweepCursor = 0;
+        }
+
+        if (sweepStage == SWEEP_WALK) {
+            // Walk recipe outputs from every candidate through nodes that are still unresolved
+            while (true) {
+                if (stackTop == 0) {
+                    while (sweepCursor < pendingCount && pendingValues[sweepCursor] <= 0.0) {
+                        sweepCursor++;
+                    }
+                    if (sweepCursor == pendingCount) {
+                        break;
+                    }
+                    stack[stackTop++] = pending[sweepCursor++];
+                }
+                if (pastDeadline(deadline)) {
+                    return false;
+                }
+
+                int node = stack[--stackTop];
+                for (int c = consumerStart[node]; c < consumerStart[node + 1]; c++) {
+                    int output = recipes.get(consumers[c]).output();
+                    if (values[output] == 0.0 && fixedValues[output] <= 0.0 && dirty[output]
+                            && reachedMarks[output] != sweep) {
+                        reachedMarks[output] = sweep;
+                        if (candidateMarks[output] == sweep) {
+                            reachedCandidates++;
+                        }
+                        stack[stackTop++] = output;
+                    }
+                }
+            }
+            sweepStage = SWEEP_APPLY;
+            sweepCursor = 0;
+        }
+
+        boolean cycle = reachedCandidates == candidateCount;
+        while (sweepCursor < pendingCount) {
+            if (pastDeadline(deadline)) {
+                return false;
+            }
+            int i = sweepCursor++;
+            int node = pending[i];
+            if (pendingValues[i] > 0.0 && (cycle || reachedMarks[node] != sweep)) {
+                values[node] = pendingValues[i];
+                inferred[node] = true;
+                inferredNodes++;
+                enqueue(node);
+            }
+        }
+        sweepStage = SWEEP_IDLE;
+        return true;
+    }
+
+    /**
+     * Check if a solve was started and has not finished yet
+     */
+    public boolean isSolving() {
+        return queue != null;
+    }
+
+    private void enqueue(int node) {
+        if (!inQueue[node]) {
+            queue[(head + size++) % queue.length] = node;
+            inQueue[node] = true;
+        }
+    }
+
+    /**
+     * Bring a node's share of its tags' aggregates in line with its current value
+     */
+    private void updateTags(int node) {
+        double value = inferred[node] ? 0.0 : values[node];
+        double previous = contributions[node];
+        if (value == previous) {
+            return;
+        }
+        contributions[node] = value;
+
+        for (int t = nodeTagStart[node]; t < nodeTagStart[node + 1]; t++) {
+            int tag = nodeTags[t];
+            tagSums[tag] += value - previous;
+            if (previous <= 0.0) {
+                tagCounts[tag]++;
+            } else if (value <= 0.0) {
+                tagCounts[tag]--;
+            }
+        }
+    }
+
+    /**
+     * Median of the average values of a node's tags, ignoring tags without any counted member
+     * The node itself is unresolved, so it is not part of any aggregate it reads.
+     * @return Inferred value, or 0 if none of the node's tags has a value
+     */
+    private double inferFromTags(int node) {
+        int from = nodeTagStart[node];
+        int to = nodeTagStart[node + 1];
+        if (from == to) {
+            return 0.0;
+        }
+
+        double[] averages = new double[to - from];
+        int suggestions = 0;
+        for (int t = from; t < to; t++) {
+            int tag = nodeTags[t];
+            if (tagCounts[tag] > 0) {
+                averages[suggestions++] = tagSums[tag] / tagCounts[tag];
+            }
+        }
+        if (suggestions == 0) {
+            return 0.0;
+        }
+
+        // The median keeps one very high or low tag from skewing the value
+        Arrays.sort(averages, 0, suggestions);
+        return averages[suggestions / 2];
+    }
+
+    /**
+     * Evaluate a recipe and lower its output's value if it is cheaper
+     * @return true if the output should be re-propagated
+     */
+    private boolean relax(int r, SolverRecipe recipe) {
+        int output = recipe.output();
+
+        relaxations++;
+        double candidate = evaluate(recipe);
+        double current = values[output];
+
+        if (current == 0.0 || candidate < current * (1.0 - RELATIVE_TOLERANCE)) {
+            values[output] = candidate;
+            bestRecipe[output] = r;
+            updateTags(output);
+
+            if (updates[output]++ >= MAX_UPDATES_PER_NODE) {
+                if (updates[output] == MAX_UPDATES_PER_NODE + 1) {
+                    cappedNodes++;
+                }
+                return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Value of one recipe's output given the current ingredient values
+     */
+    private double evaluate(SolverRecipe recipe) {
+        double total = 0.0;
+        int[] inputs = recipe.inputs();
+        int[] counts = recipe.inputCounts();
+        for (int i = 0; i < inputs.length; i++) {
+            total += values[inputs[i]] * counts[i];
+        }
+
+        double perItem = (total * recipe.multiplier()) / recipe.outputCount();
+
+        // Apply minimum EMC value - anything below the minimum gets rounded up
+        return Math.max(perItem, minValue);
+    }
+
+    /**
+     * Get the solved value for a node (0 if unresolved)
+     */
+    public double getValue(int node) {
+        return values == null ? 0.0 : values[node];
+    }
+
+    /**
+     * Get the index of the recipe that produced a node's value (-1 for fixed or unresolved nodes)
+     */
+    public int getBestRecipe(int node) {
+        return bestRecipe == null ? -1 : bestRecipe[node];
+    }
+
+    /**
+     * Check if a node's value is fixed rather than derived from recipes
+     */
+    public boolean isFixed(int node) {
+        return fixedValues[node] > 0.0;
+    }
+
+    /**
+     * Check if a node's value was inferred from its tags rather than derived from recipes
+     */
+    public boolean isInferred(int node) {
+        return inferred != null && inferred[node];
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getRecipeCount() {
+        return recipes.size();
+    }
+
+    public int getTagCount() {
+        return tags.size();
+    }
+
+    /**
+     * Number of recipe evaluations performed by the last solve
+     */
+    public long getRelaxationCount() {
+        return relaxations;
+    }
+
+    /**
+     * Number of nodes re-solved by the last solve (all nodes for a full solve)
+     */
+    public int getDirtyNodeCount() {
+        return dirtyNodes;
+    }
+
+    /**
+     * Number of nodes that hit the update bound during the last solve
+     */
+    public int getCappedNodeCount() {
+        return cappedNodes;
+    }
+
+    /**
+     * Number of nodes the last solve inferred from tags
+     */
+    public int getInferredNodeCount() {
+        return inferredNodes;
+    }
+
+    /**
+     * Time the last solve spent inferring values from tags
+     */
+    public long getInferenceNanos() {
+        return inferenceNanos;
+    }
+}
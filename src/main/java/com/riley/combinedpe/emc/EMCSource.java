@@ -0,0 +1,57 @@
+package com.riley.combinedpe.emc;
+
+/**
+ * Where a discovered EMC value came from
+ *
+ * The ID is stored as a single byte in the binary cache, so existing IDs must never change.
+ */
+public enum EMCSource {
+    UNKNOWN(0, "unknown"),
+    CONFIG_OVERRIDE(1, "config_override"),
+    RECIPE(2, "recipe"),
+    TAG_INFERENCE(3, "tag_inference");
+
+    private static final EMCSource[] BY_ID = new EMCSource[4];
+
+    static {
+        for (EMCSource source : values()) {
+            BY_ID[source.id] = source;
+        }
+    }
+
+    private final byte id;
+    private final String name;
+
+    EMCSource(int id, String name) {
+        this.id = (byte) id;
+        this.name = name;
+    }
+
+    /**
+     * Byte ID used in the binary cache
+     */
+    public byte getId() {
+        return id;
+    }
+
+    /**
+     * Name used in reports and JSON exports
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Check if values of this source were derived by a scan (from recipes or tags) rather than set
+     */
+    public boolean isDerived() {
+        return this == RECIPE || this == TAG_INFERENCE;
+    }
+
+    /**
+     * Look up a source by byte ID (UNKNOWN for unrecognized IDs)
+     */
+    public static EMCSource byId(byte id) {
+        return id >= 0 && id < BY_ID.length && BY_ID[id] != null ? BY_ID[id] : UNKNOWN;
+    }
+}
@@ -0,0 +1,195 @@
+package com.riley.combinedpe.emc;
+
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.world.item.Item;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds the published EMC values that CombinedPEMapper registers with ProjectE
+ *
+ * Values live in immutable {@link Snapshot}s: a double array and a source byte array,
+ * both indexed by item registry ID. Publishing swaps the current snapshot by reference,
+ * so readers (ProjectE's reload, commands) never copy or lock, and never see a half-written table.
+ */
+public final class EMCStore {
+
+    private static final AtomicInteger NEXT_VERSION = new AtomicInteger();
+    private static final Snapshot EMPTY = new Snapshot(0, new double[0], new byte[0], 0);
+
+    private static volatile Snapshot current = EMPTY;
+
+    private EMCStore() {}
+
+    /**
+     * Get the currently published values (never null)
+     */
+    public static Snapshot getSnapshot() {
+        return current;
+    }
+
+    /**
+     * Publish a new set of values, replacing the current one
+     */
+    public static void publish(Snapshot snapshot) {
+        current = snapshot;
+    }
+
+    /**
+     * Drop all published values
+     */
+    public static void clear() {
+        current = EMPTY;
+    }
+
+    /**
+     * Receives snapshot entries in registry order
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(Item item, double value, EMCSource source);
+    }
+
+    /**
+     * Immutable EMC values by item registry ID
+     */
+    public static final class Snapshot {
+
+        // Marks IDs without a value in the sources array
+        private static final byte NO_VALUE = -1;
+
+        private final int version;
+        private final double[] values;
+        private final byte[] sources;
+        private final int size;
+
+        private Snapshot(int version, double[] values, byte[] sources, int size) {
+            this.version = version;
+            this.values = values;
+            this.sources = sources;
+            this.size = size;
+        }
+
+        /**
+         * Version number, increasing with every built snapshot
+         */
+        public int getVersion() {
+            return version;
+        }
+
+        /**
+         * Number of items with a value
+         */
+        public int size() {
+            return size;
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        public boolean hasValue(Item item) {
+            int id = BuiltInRegistries.ITEM.getId(item);
+            return id >= 0 && id < sources.length && sources[id] != NO_VALUE;
+        }
+
+        /**
+         * Get an item's EMC value
+         * @return EMC value, or 0 if the item has none
+         */
+        public double getValue(Item item) {
+            return hasValue(item) ? values[BuiltInRegistries.ITEM.getId(item)] : 0.0;
+        }
+
+        /**
+         * Get an item's EMC value rounded for ProjectE registration
+         */
+        public long getValueAsLong(Item item) {
+            return Math.round(getValue(item));
+        }
+
+        /**
+         * Check if an item's value was derived by a scan (see {@link EMCSource#isDerived()})
+         */
+        public boolean isDerived(Item item) {
+            return hasValue(item) && EMCSource.byId(sources[BuiltInRegistries.ITEM.getId(item)]).isDerived();
+        }
+
+        /**
+         * Get where an item's value came from
+         * @return Source, or null if the item has no value
+         */
+        public EMCSource getSource(Item item) {
+            return hasValue(item) ? EMCSource.byId(sources[BuiltInRegistries.ITEM.getId(item)]) : null;
+        }
+
+        /**
+         * Count items whose value or source differs from another snapshot (including added and removed values)
+         */
+        public int countChanges(Snapshot other) {
+            int length = Math.max(sources.length, other.sources.length);
+            int changes = 0;
+            for (int id = 0; id < length; id++) {
+                byte source = id < sources.length ? sources[id] : NO_VALUE;
+                byte otherSource = id < other.sources.length ? other.sources[id] : NO_VALUE;
+                if (source != otherSource || (source != NO_VALUE && values[id] != other.values[id])) {
+                    changes++;
+                }
+            }
+            return changes;
+        }
+
+        /**
+         * Visit every item with a value, in registry order
+         */
+        public void forEach(EntryConsumer consumer) {
+            for (int id = 0; id < sources.length; id++) {
+                if (sources[id] != NO_VALUE) {
+                    consumer.accept(BuiltInRegistries.ITEM.byId(id), values[id], EMCSource.byId(sources[id]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects values for a new snapshot (single thread)
+     */
+    public static final class Builder {
+
+        private final double[] values;
+        private final byte[] sources;
+        private int size;
+
+        public Builder() {
+            int capacity = BuiltInRegistries.ITEM.size();
+            this.values = new double[capacity];
+            this.sources = new byte[capacity];
+            Arrays.fill(sources, Snapshot.NO_VALUE);
+        }
+
+        /**
+         * Set an item's value, replacing any earlier value for it
+         */
+        public Builder put(Item item, double value, EMCSource source) {
+            int id = BuiltInRegistries.ITEM.getId(item);
+            if (id < 0 || id >= values.length) {
+                return this;
+            }
+
+            if (sources[id] == Snapshot.NO_VALUE) {
+                size++;
+            }
+            values[id] = value;
+            sources[id] = source.getId();
+            return this;
+        }
+
+        /**
+         * Build the snapshot; the builder must not be used afterwards
+         */
+        public Snapshot build() {
+            return new Snapshot(NEXT_VERSION.incrementAndGet(), values, sources, size);
+        }
+    }
+}
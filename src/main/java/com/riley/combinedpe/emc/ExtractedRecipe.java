@@ -0,0 +1,36 @@
+package com.riley.combinedpe.emc;
+
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.crafting.Ingredient;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A recipe normalized by a {@link RecipeExtractor}: what goes in and what comes out
+ * @param inputs Consumed ingredients (catalysts and tools should be left out)
+ * @param result Result stack (its components count, its count is ignored in favour of outputCount)
+ * @param outputCount Number of result items produced
+ */
+public record ExtractedRecipe(List<Input> inputs, ItemStack result, int outputCount) {
+
+    /**
+     * One consumed ingredient
+     * @param ingredient Accepted items
+     * @param count Number of ingredient stacks consumed
+     */
+    public record Input(Ingredient ingredient, int count) {}
+
+    /**
+     * Normalize a recipe whose ingredients are each consumed once
+     */
+    public static ExtractedRecipe of(List<Ingredient> ingredients, ItemStack result) {
+        List<Input> inputs = new ArrayList<>(ingredients.size());
+        for (Ingredient ingredient : ingredients) {
+            if (ingredient != null && !ingredient.isEmpty()) {
+                inputs.add(new Input(ingredient, 1));
+            }
+        }
+        return new ExtractedRecipe(inputs, result, result.getCount());
+    }
+}
@@ -0,0 +1,101 @@
+package com.riley.combinedpe.emc;
+
+/**
+ * Small streaming 64-bit hasher for cache fingerprints
+ *
+ * FNV-1a over the fed values with a 64-bit avalanche finalizer. Not cryptographic;
+ * it only has to tell pack states apart, and it must be cheap enough to run over
+ * every recipe and tag on startup.
+ *
+ * {@link #mix(long)} spreads a finished hash so several can be combined with
+ * addition, which makes a section's hash independent of iteration order.
+ */
+public final class FingerprintHasher {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private long state = FNV_OFFSET_BASIS;
+
+    public FingerprintHasher putByte(int value) {
+        state ^= (value & 0xFF);
+        state *= FNV_PRIME;
+        return this;
+    }
+
+    public FingerprintHasher putInt(int value) {
+        putByte(value);
+        putByte(value >>> 8);
+        putByte(value >>> 16);
+        putByte(value >>> 24);
+        return this;
+    }
+
+    public FingerprintHasher putLong(long value) {
+        putInt((int) value);
+        putInt((int) (value >>> 32));
+        return this;
+    }
+
+    public FingerprintHasher putDouble(double value) {
+        return putLong(Double.doubleToLongBits(value));
+    }
+
+    public FingerprintHasher putBoolean(boolean value) {
+        return putByte(value ? 1 : 0);
+    }
+
+    /**
+     * Feed a byte array (length-prefixed)
+     */
+    public FingerprintHasher putBytes(byte[] value) {
+        putInt(value.length);
+        for (byte b : value) {
+            putByte(b);
+        }
+        return this;
+    }
+
+    /**
+     * Feed a string (length-prefixed, so "ab"+"c" and "a"+"bc" differ)
+     * Null is fed as a distinct marker
+     */
+    public FingerprintHasher putString(String value) {
+        if (value == null) {
+            return putInt(-1);
+        }
+        putInt(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            putByte(c);
+            putByte(c >>> 8);
+        }
+        return this;
+    }
+
+    /**
+     * Get the hash of everything fed so far
+     */
+    public long finish() {
+        return mix(state);
+    }
+
+    /**
+     * 64-bit avalanche mix (MurmurHash3 finalizer)
+     */
+    public static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /**
+     * Format a hash as a fixed-width hex string
+     */
+    public static String toHex(long hash) {
+        return String.format("%016x", hash);
+    }
+}
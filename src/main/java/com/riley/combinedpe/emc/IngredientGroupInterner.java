@@ -0,0 +1,74 @@
+package com.riley.combinedpe.emc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns ingredients with several alternatives and assigns each distinct one a dense integer ID
+ *
+ * Each group becomes one node of the recipe graph whose value is the cheapest of its
+ * alternatives, so the minimum is computed once per distinct ingredient rather than once
+ * per recipe using it. Groups are identified by content (alternative key IDs and counts,
+ * in ingredient order), so IDs stay stable between scans that keep the interner.
+ *
+ * Not thread-safe; used by the single thread building the recipe graph.
+ */
+public class IngredientGroupInterner {
+
+    /**
+     * An ingredient's alternatives
+     * @param keys Item key ID of each alternative, in ingredient order
+     * @param counts Stack count of each alternative
+     */
+    private record Group(int[] keys, int[] counts) {
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Group other && Arrays.equals(keys, other.keys) && Arrays.equals(counts, other.counts);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(keys) + Arrays.hashCode(counts);
+        }
+    }
+
+    private final Map<Group, Integer> ids = new HashMap<>();
+    private final List<Group> groups = new ArrayList<>();
+
+    /**
+     * Intern an ingredient's alternatives
+     * @return Group ID
+     */
+    public int intern(IngredientResolver.Resolved resolved) {
+        Group group = new Group(resolved.keys(), resolved.counts());
+        Integer id = ids.get(group);
+        if (id == null) {
+            id = groups.size();
+            ids.put(group, id);
+            groups.add(group);
+        }
+        return id;
+    }
+
+    /**
+     * Item key IDs of a group's alternatives, in ingredient order
+     */
+    public int[] getKeys(int id) {
+        return groups.get(id).keys();
+    }
+
+    /**
+     * Stack counts of a group's alternatives
+     */
+    public int[] getCounts(int id) {
+        return groups.get(id).counts();
+    }
+
+    public int size() {
+        return groups.size();
+    }
+}
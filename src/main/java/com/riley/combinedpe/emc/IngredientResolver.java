@@ -0,0 +1,96 @@
+package com.riley.combinedpe.emc;
+
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.crafting.Ingredient;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Resolves recipe ingredients to canonical item key IDs, once per ingredient instance
+ *
+ * Ingredient instances are shared by many recipes (one "#minecraft:planks" ingredient can be
+ * used by hundreds), and {@link Ingredient#getItems()} resolves tags and copies stacks on
+ * every call. Entries are keyed by ingredient identity, so each instance is resolved once.
+ *
+ * Valid for one scan (the keys belong to one {@link ItemKeyInterner}).
+ * Not thread-safe; used by the single thread building the recipe graph.
+ */
+public class IngredientResolver {
+
+    /**
+     * An ingredient's alternatives, in ingredient order without duplicate keys
+     * @param keys Item key ID of each alternative
+     * @param counts Stack count of each alternative
+     */
+    public record Resolved(int[] keys, int[] counts) {
+
+        public boolean isEmpty() {
+            return keys.length == 0;
+        }
+    }
+
+    private static final Resolved EMPTY = new Resolved(new int[0], new int[0]);
+
+    private final ItemKeyInterner itemKeys;
+    private final Map<Ingredient, Resolved> cache = new IdentityHashMap<>();
+    private long lookups;
+
+    public IngredientResolver(ItemKeyInterner itemKeys) {
+        this.itemKeys = itemKeys;
+    }
+
+    /**
+     * Resolve an ingredient, interning any item keys it needs
+     */
+    public Resolved resolve(Ingredient ingredient) {
+        lookups++;
+        Resolved resolved = cache.get(ingredient);
+        if (resolved == null) {
+            resolved = compute(ingredient);
+            cache.put(ingredient, resolved);
+        }
+        return resolved;
+    }
+
+    private Resolved compute(Ingredient ingredient) {
+        ItemStack[] stacks = ingredient.getItems();
+        if (stacks.length == 0) {
+            return EMPTY;
+        }
+
+        int[] keys = new int[stacks.length];
+        int[] counts = new int[stacks.length];
+        int size = 0;
+
+        outer:
+        for (ItemStack stack : stacks) {
+            int key = itemKeys.intern(stack);
+            for (int i = 0; i < size; i++) {
+                if (keys[i] == key) {
+                    continue outer;
+                }
+            }
+            keys[size] = key;
+            counts[size] = stack.getCount();
+            size++;
+        }
+
+        return new Resolved(Arrays.copyOf(keys, size), Arrays.copyOf(counts, size));
+    }
+
+    /**
+     * Number of resolve calls
+     */
+    public long getLookupCount() {
+        return lookups;
+    }
+
+    /**
+     * Number of distinct ingredient instances resolved
+     */
+    public int getIngredientCount() {
+        return cache.size();
+    }
+}
@@ -0,0 +1,77 @@
+package com.riley.combinedpe.emc;
+
+import net.minecraft.core.component.DataComponentPatch;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+
+/**
+ * Immutable, value-based key for an item and its component changes
+ *
+ * ItemStack has no value-based equals/hashCode and callers build fresh stacks
+ * on every lookup, so EMC tables key on ItemKey instead. Stack count is not part
+ * of the key. Keys are created and interned by {@link ItemKeyInterner}, which also
+ * assigns each distinct key a dense integer ID.
+ */
+public final class ItemKey {
+
+    private final Item item;
+    private final DataComponentPatch components;
+    private final int hash;
+
+    ItemKey(Item item, DataComponentPatch components) {
+        this.item = item;
+        // Normalize "no changes" to the shared empty patch
+        this.components = components == null || components.isEmpty() ? DataComponentPatch.EMPTY : components;
+        this.hash = 31 * System.identityHashCode(item) + this.components.hashCode();
+    }
+
+    /**
+     * Create the lookup key for a stack
+     */
+    static ItemKey of(ItemStack stack) {
+        return new ItemKey(stack.getItem(), stack.getComponentsPatch());
+    }
+
+    public Item getItem() {
+        return item;
+    }
+
+    public DataComponentPatch getComponents() {
+        return components;
+    }
+
+    /**
+     * Check if this key is the item without any component changes
+     */
+    public boolean isPlain() {
+        return components.isEmpty();
+    }
+
+    /**
+     * Create a single-item stack matching this key
+     */
+    public ItemStack toStack() {
+        return new ItemStack(item.builtInRegistryHolder(), 1, components);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ItemKey other)) {
+            return false;
+        }
+        return item == other.item && hash == other.hash && components.equals(other.components);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return isPlain() ? item.toString() : item + components.toString();
+    }
+}
@@ -0,0 +1,148 @@
+package com.riley.combinedpe.emc;
+
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns {@link ItemKey}s and assigns each distinct key a dense integer ID
+ *
+ * The IDs index every EMC memo table of a scan, so a value is computed once per
+ * distinct item (plus components) no matter how many recipes reference it.
+ *
+ * Plain items (no component changes) are looked up through an array indexed by
+ * item registry ID, so the common case allocates nothing.
+ *
+ * Not thread-safe while interning; {@link #find} is safe for concurrent readers
+ * once interning is finished (the hit counters are then only approximate).
+ */
+public class ItemKeyInterner {
+
+    private final Map<ItemKey, Integer> ids = new HashMap<>();
+    private final List<ItemKey> keys = new ArrayList<>();
+
+    // Item registry ID -> key ID for plain items (-1 = not interned yet)
+    private int[] plainIds = new int[0];
+
+    // Lookup statistics, used to report the memo hit rate
+    private long lookups;
+    private long hits;
+
+    /**
+     * Intern a plain item
+     * @return Key ID
+     */
+    public int intern(Item item) {
+        lookups++;
+        int registryId = BuiltInRegistries.ITEM.getId(item);
+        ensurePlainCapacity(registryId);
+
+        int id = plainIds[registryId];
+        if (id >= 0) {
+            hits++;
+            return id;
+        }
+
+        id = add(new ItemKey(item, null));
+        plainIds[registryId] = id;
+        return id;
+    }
+
+    /**
+     * Intern the item and components of a stack (count is ignored)
+     * @return Key ID
+     */
+    public int intern(ItemStack stack) {
+        if (stack.getComponentsPatch().isEmpty()) {
+            return intern(stack.getItem());
+        }
+
+        lookups++;
+        ItemKey key = ItemKey.of(stack);
+        Integer id = ids.get(key);
+        if (id != null) {
+            hits++;
+            return id;
+        }
+        return add(key);
+    }
+
+    /**
+     * Find the ID of a stack's key without interning it
+     * @return Key ID, or -1 if the key was never interned
+     */
+    public int find(ItemStack stack) {
+        if (stack.getComponentsPatch().isEmpty()) {
+            return find(stack.getItem());
+        }
+        Integer id = ids.get(ItemKey.of(stack));
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Find the ID of a plain item without interning it
+     * @return Key ID, or -1 if the item was never interned
+     */
+    public int find(Item item) {
+        int registryId = BuiltInRegistries.ITEM.getId(item);
+        return registryId >= 0 && registryId < plainIds.length ? plainIds[registryId] : -1;
+    }
+
+    /**
+     * Get the key for an ID
+     */
+    public ItemKey get(int id) {
+        return keys.get(id);
+    }
+
+    /**
+     * Number of distinct keys interned so far
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    public long getLookupCount() {
+        return lookups;
+    }
+
+    public long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Reset the lookup statistics, so a reused interner reports the hit rate of one scan
+     */
+    public void resetStats() {
+        lookups = 0;
+        hits = 0;
+    }
+
+    /**
+     * Fraction of intern calls answered by an existing key (0 to 1)
+     */
+    public double getHitRate() {
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    private int add(ItemKey key) {
+        int id = keys.size();
+        keys.add(key);
+        ids.put(key, id);
+        return id;
+    }
+
+    private void ensurePlainCapacity(int registryId) {
+        if (registryId >= plainIds.length) {
+            int oldLength = plainIds.length;
+            plainIds = Arrays.copyOf(plainIds, Math.max(registryId + 1, BuiltInRegistries.ITEM.size()));
+            Arrays.fill(plainIds, oldLength, plainIds.length, -1);
+        }
+    }
+}
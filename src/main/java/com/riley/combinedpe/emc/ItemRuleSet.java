@@ -0,0 +1,228 @@
+package com.riley.combinedpe.emc;
+
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.tags.TagKey;
+import net.minecraft.world.item.Item;
+
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Compiled set of item rules, each mapping matching items to a value
+ *
+ * Rule syntax:
+ * - "modid:item"    exact item ID (hash lookup)
+ * - "modid:*"       every item of a mod (hash lookup on the namespace)
+ * - "#c:ores"       every item in a tag (resolved through {@link TagIndex})
+ * - "*:*_ore"       glob, '*' matches any characters and '?' one character
+ * - "/regex/"       regular expression over the full item ID
+ *
+ * When several rules match, the most specific wins: exact ID, then tag, then glob/regex,
+ * then namespace. Among rules of the same kind, the later entry wins.
+ */
+public final class ItemRuleSet {
+
+    /**
+     * Returned when no rule matches
+     */
+    public static final long NO_MATCH = Long.MIN_VALUE;
+
+    public static final ItemRuleSet EMPTY = new Builder().build();
+
+    private static final Pattern ITEM_ID = Pattern.compile("[a-z0-9_.-]+:[a-z0-9_./-]+");
+    private static final Pattern NAMESPACE = Pattern.compile("[a-z0-9_.-]+");
+
+    private record PatternRule(Pattern pattern, long value) {}
+
+    private record TagRule(ResourceLocation tag, long value) {}
+
+    private final Map<String, Long> exact;
+    private final Map<String, Long> namespaces;
+    private final List<PatternRule> patterns;
+    private final List<TagRule> tags;
+    private final Map<String, Long> entries;
+    private final List<String> invalidEntries;
+
+    private ItemRuleSet(Builder builder) {
+        this.exact = Map.copyOf(builder.exact);
+        this.namespaces = Map.copyOf(builder.namespaces);
+        this.patterns = List.copyOf(builder.patterns);
+        this.tags = List.copyOf(builder.tags);
+        this.entries = Collections.unmodifiableMap(new LinkedHashMap<>(builder.entries));
+        this.invalidEntries = List.copyOf(builder.invalidEntries);
+    }
+
+    /**
+     * Match an item ID against the exact, namespace and glob/regex rules
+     * Tag rules need the item's tags and are only applied by {@link #resolve(String[], TagIndex)}
+     * @return Value of the winning rule, or {@link #NO_MATCH}
+     */
+    public long match(String itemId) {
+        Long value = exact.get(itemId);
+        if (value != null) {
+            return value;
+        }
+
+        for (int i = patterns.size() - 1; i >= 0; i--) {
+            PatternRule rule = patterns.get(i);
+            if (rule.pattern().matcher(itemId).matches()) {
+                return rule.value();
+            }
+        }
+
+        int separator = itemId.indexOf(':');
+        if (separator > 0) {
+            value = namespaces.get(itemId.substring(0, separator));
+            if (value != null) {
+                return value;
+            }
+        }
+
+        return NO_MATCH;
+    }
+
+    /**
+     * Resolve all rules, including tag rules, for every registered item
+     * @param itemIds Item IDs indexed by registry ID
+     * @param tagIndex Tag index of the current tags
+     * @return Winning value per registry ID, {@link #NO_MATCH} where no rule matches
+     */
+    public long[] resolve(String[] itemIds, TagIndex tagIndex) {
+        long[] values = new long[itemIds.length];
+        Arrays.fill(values, NO_MATCH);
+
+        // Least specific first, so more specific rules overwrite
+        if (!namespaces.isEmpty() || !patterns.isEmpty()) {
+            for (int id = 0; id < itemIds.length; id++) {
+                values[id] = match(itemIds[id]);
+            }
+        }
+
+        for (TagRule rule : tags) {
+            int tagId = tagIndex.getTagId(TagKey.create(Registries.ITEM, rule.tag()));
+            if (tagId < 0) {
+                continue;
+            }
+            for (int memberId : tagIndex.getMemberIds(tagId)) {
+                if (memberId < values.length) {
+                    values[memberId] = rule.value();
+                }
+            }
+        }
+
+        for (Map.Entry<String, Long> rule : exact.entrySet()) {
+            ResourceLocation location = ResourceLocation.tryParse(rule.getKey());
+            Optional<Item> item = location == null ? Optional.empty() : BuiltInRegistries.ITEM.getOptional(location);
+            if (item.isPresent()) {
+                int id = BuiltInRegistries.ITEM.getId(item.get());
+                if (id >= 0 && id < values.length) {
+                    values[id] = rule.getValue();
+                }
+            }
+        }
+
+        return values;
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Valid rules as written in the config (normalized), with their values, in config order
+     */
+    public Map<String, Long> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Config entries that could not be compiled, with the reason
+     */
+    public List<String> getInvalidEntries() {
+        return invalidEntries;
+    }
+
+    /**
+     * Compiles rules one entry at a time
+     */
+    public static final class Builder {
+
+        private final Map<String, Long> exact = new HashMap<>();
+        private final Map<String, Long> namespaces = new HashMap<>();
+        private final List<PatternRule> patterns = new ArrayList<>();
+        private final List<TagRule> tags = new ArrayList<>();
+        private final Map<String, Long> entries = new LinkedHashMap<>();
+        private final List<String> invalidEntries = new ArrayList<>();
+
+        /**
+         * Add a rule
+         * @return true if the rule was valid
+         */
+        public boolean add(String rule, long value) {
+            String trimmed = rule == null ? "" : rule.trim();
+            if (trimmed.isEmpty()) {
+                return invalid(rule, "empty rule");
+            }
+
+            if (trimmed.startsWith("#")) {
+                String tag = trimmed.substring(1);
+                if (!ITEM_ID.matcher(tag).matches()) {
+                    return invalid(rule, "invalid tag ID");
+                }
+                tags.add(new TagRule(ResourceLocation.parse(tag), value));
+            } else if (trimmed.length() > 2 && trimmed.startsWith("/") && trimmed.endsWith("/")) {
+                try {
+                    patterns.add(new PatternRule(Pattern.compile(trimmed.substring(1, trimmed.length() - 1)), value));
+                } catch (PatternSyntaxException e) {
+                    return invalid(rule, "invalid regular expression: " + e.getDescription());
+                }
+            } else if (trimmed.endsWith(":*") && NAMESPACE.matcher(trimmed.substring(0, trimmed.length() - 2)).matches()) {
+                namespaces.put(trimmed.substring(0, trimmed.length() - 2), value);
+            } else if (trimmed.indexOf('*') >= 0 || trimmed.indexOf('?') >= 0) {
+                patterns.add(new PatternRule(compileGlob(trimmed), value));
+            } else if (ITEM_ID.matcher(trimmed).matches()) {
+                exact.put(trimmed, value);
+            } else {
+                return invalid(rule, "invalid item ID");
+            }
+
+            entries.put(trimmed, value);
+            return true;
+        }
+
+        /**
+         * Record an entry that could not be compiled
+         * @return always false
+         */
+        public boolean invalid(String entry, String reason) {
+            invalidEntries.add("\"" + entry + "\" (" + reason + ")");
+            return false;
+        }
+
+        public ItemRuleSet build() {
+            return new ItemRuleSet(this);
+        }
+
+        private static Pattern compileGlob(String glob) {
+            StringBuilder regex = new StringBuilder(glob.length() + 8);
+            int literalStart = 0;
+            for (int i = 0; i < glob.length(); i++) {
+                char c = glob.charAt(i);
+                if (c == '*' || c == '?') {
+                    if (i > literalStart) {
+                        regex.append(Pattern.quote(glob.substring(literalStart, i)));
+                    }
+                    regex.append(c == '*' ? ".*" : ".");
+                    literalStart = i + 1;
+                }
+            }
+            if (literalStart < glob.length()) {
+                regex.append(Pattern.quote(glob.substring(literalStart)));
+            }
+            return Pattern.compile(regex.toString());
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.riley.combinedpe.emc;
+
+import com.riley.combinedpe.CombinedPE;
+import com.riley.combinedpe.Config;
+import net.minecraft.SharedConstants;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.crafting.Ingredient;
+import net.neoforged.fml.ModList;
+import net.neoforged.neoforgespi.language.IModInfo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Content fingerprint of everything a scan's results depend on
+ *
+ * Covers:
+ * - Minecraft version, loaded mods and their versions
+ * - Every recipe as the recipe graph sees it (ID, type, extracted inputs and counts, result,
+ *   output count, multiplier), and the recipe extractors loaded from other mods
+ * - Every item tag and its members
+ * - Config multipliers, overrides and blacklist, and runtime overrides
+ * - ProjectE's version and its config files (custom EMC values, mapper settings)
+ *
+ * If the fingerprint stored in the cache matches, the cached values are still valid.
+ * Each section is hashed per entry and the entry hashes are summed, so the result
+ * does not depend on registry or recipe manager iteration order and no sorting is needed.
+ *
+ * The config section is kept apart from the pack content, so a runtime override
+ * ({@link #withConfig}) re-stamps the fingerprint without hashing every recipe and tag again.
+ */
+public final class PackFingerprint {
+
+    private static final String PROJECTE_MOD_ID = "projecte";
+
+    // ProjectE's own config (custom_emc.json and the mapper settings); values from it are fixed in the graph
+    private static final Path PROJECTE_CONFIG_DIR = Paths.get("config", "ProjectE");
+
+    // Hash of everything but the config section
+    private final long contentHash;
+
+    private PackFingerprint(long contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * Compute the fingerprint of the captured pack content
+     * Reads only the index, the tag index, frozen registries and files, so it may run on the scan thread.
+     * Combine it with {@link #hashConfig()} through {@link #withConfig} to get the full fingerprint.
+     * @param recipeIndex Recipes of the load, as the scan's recipe graph will read them
+     * @param tagIndex Item tags captured for the load
+     */
+    public static PackFingerprint compute(RecipeIndex recipeIndex, TagIndex tagIndex) {
+        long startTime = System.currentTimeMillis();
+
+        // Hash each item ID once; recipes and tags refer to items through these
+        long[] itemHashes = new long[BuiltInRegistries.ITEM.size()];
+        for (Item item : BuiltInRegistries.ITEM) {
+            itemHashes[BuiltInRegistries.ITEM.getId(item)] =
+                new FingerprintHasher().putString(BuiltInRegistries.ITEM.getKey(item).toString()).finish();
+        }
+
+        FingerprintHasher hasher = new FingerprintHasher()
+            .putString(SharedConstants.getCurrentVersion().getName())
+            .putLong(hashMods())
+            .putLong(hashRecipes(recipeIndex, itemHashes))
+            .putLong(hashTags(tagIndex, itemHashes))
+            .putLong(hashProjectE());
+
+        PackFingerprint fingerprint = new PackFingerprint(hasher.finish());
+
+        CombinedPE.LOGGER.info("Computed pack fingerprint in {}ms", System.currentTimeMillis() - startTime);
+        return fingerprint;
+    }
+
+    /**
+     * Full fingerprint of this pack content with the given config
+     * @param configHash Result of {@link #hashConfig()}
+     * @return Fingerprint as a hex string
+     */
+    public String withConfig(long configHash) {
+        return FingerprintHasher.toHex(new FingerprintHasher().putLong(contentHash).putLong(configHash).finish());
+    }
+
+    /**
+     * Hash mod IDs and versions (order-independent)
+     */
+    private static long hashMods() {
+        long sum = 0;
+        int count = 0;
+        for (IModInfo mod : ModList.get().getMods()) {
+            sum += FingerprintHasher.mix(new FingerprintHasher()
+                .putString(mod.getModId())
+                .putString(String.valueOf(mod.getVersion()))
+                .finish());
+            count++;
+        }
+        return new FingerprintHasher().putLong(sum).putInt(count).finish();
+    }
+
+    /**
+     * Hash every recipe as its extractor reads it (order-independent), plus the loaded extractors
+     * Extractors decide which ingredients are consumed and how many, so the raw recipe is not enough.
+     */
+    private static long hashRecipes(RecipeIndex index, long[] itemHashes) {
+        long sum = 0;
+        int count = 0;
+
+        // Ingredient instances are shared across recipes; hash each one once
+        Map<Ingredient, Long> ingredientHashes = new IdentityHashMap<>();
+
+        for (RecipeIndex.IndexedRecipe recipe : index.getAllRecipes()) {
+            FingerprintHasher recipeHasher = new FingerprintHasher()
+                .putString(recipe.id().toString())
+                .putString(recipe.type().toString())
+                .putLong(itemHash(itemHashes, recipe.result().getItem()))
+                .putInt(recipe.outputCount())
+                .putDouble(recipe.multiplier())
+                .putInt(recipe.inputs().size());
+
+            for (ExtractedRecipe.Input input : recipe.inputs()) {
+                recipeHasher.putLong(ingredientHashes.computeIfAbsent(input.ingredient(),
+                    key -> hashIngredient(key, itemHashes))).putInt(input.count());
+            }
+
+            sum += FingerprintHasher.mix(recipeHasher.finish());
+            count++;
+        }
+
+        FingerprintHasher hasher = new FingerprintHasher().putLong(sum).putInt(count);
+        List<String> extractors = RecipeExtractors.getServiceExtractorClasses();
+        hasher.putInt(extractors.size());
+        for (String extractor : extractors) {
+            hasher.putString(extractor);
+        }
+        return hasher.finish();
+    }
+
+    /**
+     * Hash every item tag and its members (order-independent)
+     */
+    private static long hashTags(TagIndex tagIndex, long[] itemHashes) {
+        long sum = 0;
+        for (int tagId = 0; tagId < tagIndex.getTagCount(); tagId++) {
+            int[] members = tagIndex.getMemberIds(tagId);
+            long memberSum = 0;
+            for (int itemId : members) {
+                memberSum += FingerprintHasher.mix(itemHashes[itemId]);
+            }
+
+            sum += FingerprintHasher.mix(new FingerprintHasher()
+                .putString(tagIndex.getTag(tagId).location().toString())
+                .putLong(memberSum)
+                .putInt(members.length)
+                .finish());
+        }
+
+        return new FingerprintHasher().putLong(sum).putLong(tagIndex.getTagCount()).finish();
+    }
+
+    /**
+     * Hash the config values that affect calculated EMC, runtime overrides included (server thread)
+     */
+    public static long hashConfig() {
+        FingerprintHasher hasher = new FingerprintHasher()
+            .putDouble(Config.CRAFTING_MULTIPLIER.get())
+            .putDouble(Config.SMELTING_MULTIPLIER.get())
+            .putDouble(Config.SMITHING_MULTIPLIER.get());
+
+        hasher.putInt(Config.RECIPE_TYPE_MULTIPLIERS.get().size());
+        for (String entry : Config.RECIPE_TYPE_MULTIPLIERS.get()) {
+            hasher.putString(entry);
+        }
+
+        hasher.putInt(Config.IGNORED_RECIPE_TYPES.get().size());
+        for (String entry : Config.IGNORED_RECIPE_TYPES.get()) {
+            hasher.putString(entry);
+        }
+
+        hasher.putString(Config.INGREDIENT_ALTERNATIVES.get());
+
+        hasher.putInt(Config.EMC_OVERRIDE_ENTRIES.get().size());
+        for (String entry : Config.EMC_OVERRIDE_ENTRIES.get()) {
+            hasher.putString(entry);
+        }
+
+        hasher.putInt(Config.BLACKLISTED_ITEMS.get().size());
+        for (String entry : Config.BLACKLISTED_ITEMS.get()) {
+            hasher.putString(entry);
+        }
+
+        // Sorted by item ID, so the order is stable
+        hasher.putInt(RuntimeOverrides.getAll().size());
+        for (Map.Entry<String, Long> entry : RuntimeOverrides.getAll().entrySet()) {
+            hasher.putString(entry.getKey()).putLong(entry.getValue());
+        }
+
+        return hasher.finish();
+    }
+
+    /**
+     * Hash ProjectE's version and every file in its config directory (order-independent)
+     * Changing custom EMC values there changes ProjectE's values, which the scan reads as fixed values.
+     */
+    private static long hashProjectE() {
+        FingerprintHasher hasher = new FingerprintHasher();
+        for (IModInfo mod : ModList.get().getMods()) {
+            if (PROJECTE_MOD_ID.equals(mod.getModId())) {
+                hasher.putString(String.valueOf(mod.getVersion()));
+            }
+        }
+
+        long sum = 0;
+        int count = 0;
+        if (Files.isDirectory(PROJECTE_CONFIG_DIR)) {
+            try (Stream<Path> files = Files.walk(PROJECTE_CONFIG_DIR)) {
+                for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                    sum += FingerprintHasher.mix(new FingerprintHasher()
+                        .putString(PROJECTE_CONFIG_DIR.relativize(file).toString().replace('\\', '/'))
+                        .putBytes(Files.readAllBytes(file))
+                        .finish());
+                    count++;
+                }
+            } catch (IOException e) {
+                // An unreadable file must not match a cache from a readable one
+                CombinedPE.LOGGER.warn("Failed to read ProjectE config for the pack fingerprint", e);
+                hasher.putBoolean(false);
+            }
+        }
+
+        return hasher.putLong(sum).putInt(count).finish();
+    }
+
+    /**
+     * Hash the items and counts an ingredient accepts
+     */
+    private static long hashIngredient(Ingredient ingredient, long[] itemHashes) {
+        ItemStack[] stacks = ingredient.getItems();
+        FingerprintHasher hasher = new FingerprintHasher().putInt(stacks.length);
+        for (ItemStack stack : stacks) {
+            hasher.putLong(itemHash(itemHashes, stack.getItem())).putInt(stack.getCount());
+        }
+        return hasher.finish();
+    }
+
+    private static long itemHash(long[] itemHashes, Item item) {
+        int id = BuiltInRegistries.ITEM.getId(item);
+        return id >= 0 && id < itemHashes.length ? itemHashes[id] : 0L;
+    }
+}
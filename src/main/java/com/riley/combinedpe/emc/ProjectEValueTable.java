@@ -0,0 +1,107 @@
+package com.riley.combinedpe.emc;
+
+import com.riley.combinedpe.integration.projecte.ProjectECompat;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * ProjectE's EMC values for every registered item, captured once per scan
+ *
+ * Each item costs one proxy call at capture time; afterwards every lookup is an array read
+ * instead of a hasValue + getValue pair through IEMCProxy (each building an ItemInfo).
+ * Stacks with component changes are not in the table and still go through the proxy.
+ *
+ * The table is filled on the server thread and only read afterwards, so scan workers may share it.
+ */
+public final class ProjectEValueTable {
+
+    private final long[] values;
+    private final Predicate<Item> ignoredItems;
+
+    private final LongAdder tableHits = new LongAdder();
+    private final LongAdder proxyCalls = new LongAdder();
+    private int captureCalls;
+
+    private ProjectEValueTable(long[] values, Predicate<Item> ignoredItems) {
+        this.values = values;
+        this.ignoredItems = ignoredItems;
+    }
+
+    /**
+     * Capture ProjectE's current values (must run on the server thread)
+     * @param ignoredItems Items whose ProjectE value is treated as missing
+     */
+    public static ProjectEValueTable capture(Predicate<Item> ignoredItems) {
+        long[] values = new long[BuiltInRegistries.ITEM.size()];
+        ProjectEValueTable table = new ProjectEValueTable(values, ignoredItems);
+
+        for (Item item : BuiltInRegistries.ITEM) {
+            if (!ignoredItems.test(item)) {
+                values[BuiltInRegistries.ITEM.getId(item)] = ProjectECompat.getEMCValue(item);
+                table.captureCalls++;
+            }
+        }
+        table.proxyCalls.add(table.captureCalls);
+
+        return table;
+    }
+
+    /**
+     * Get ProjectE's value for an item
+     * @return EMC value, or 0 if the item has none (or is ignored)
+     */
+    public long get(Item item) {
+        int id = BuiltInRegistries.ITEM.getId(item);
+        if (id < 0 || id >= values.length) {
+            return 0L;
+        }
+        tableHits.increment();
+        return values[id];
+    }
+
+    /**
+     * Get ProjectE's value for a stack
+     * Plain stacks are served from the table; stacks with component changes query the proxy
+     * (server thread only)
+     * @return EMC value, or 0 if the stack has none (or its item is ignored)
+     */
+    public long get(ItemStack stack) {
+        if (stack.isEmpty()) {
+            return 0L;
+        }
+        if (stack.getComponentsPatch().isEmpty()) {
+            return get(stack.getItem());
+        }
+        if (ignoredItems.test(stack.getItem())) {
+            return 0L;
+        }
+
+        proxyCalls.increment();
+        return ProjectECompat.getEMCValue(stack);
+    }
+
+    /**
+     * Number of lookups answered from the table without calling the proxy
+     */
+    public long getTableHits() {
+        return tableHits.sum();
+    }
+
+    /**
+     * Number of proxy calls made, including the capture
+     */
+    public long getProxyCalls() {
+        return proxyCalls.sum();
+    }
+
+    /**
+     * Number of proxy calls avoided compared to querying hasValue + getValue per lookup
+     */
+    public long getAvoidedProxyCalls() {
+        return Math.max(0L, getTableHits() * 2 - captureCalls);
+    }
+}
@@ -2,13 +2,16 @@ package com.riley.combinedpe.emc;
 
 import com.riley.combinedpe.CombinedPE;
 import com.riley.combinedpe.Config;
-import com.riley.combinedpe.integration.projecte.ProjectECompat;
 import net.minecraft.core.RegistryAccess;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.item.crafting.*;
 import net.minecraft.world.level.Level;
 
 import java.util.*;
+import java.util.function.Predicate;
 
 /**
  * Calculates EMC values for items based on their recipes
@@ -23,27 +26,173 @@ import java.util.*;
  * 2. Apply multiplier based on recipe type
  * 3. Divide by output count
  * 4. Return calculated EMC per item
+ *
+ * Recipes of every type are read from a {@link RecipeIndex} built once per load and turned into an
+ * item -> recipe -> ingredient graph. The graph is solved in one pass by {@link EMCSolver},
+ * which keeps the cheapest recipe per item and handles circular recipes without recursion.
+ * Item tags take part in the same pass: items no recipe can value are inferred from their
+ * tags (see {@link TagEMCInferrer}), and can then value the recipes that use them.
+ *
+ * Graph nodes are canonical {@link ItemKey}s (item plus component changes), so each distinct
+ * item is resolved once however many recipes reference it.
+ *
+ * Ingredients with several alternatives (tags, multi-item ingredients) get a node of their own,
+ * placed after the item nodes, with one single-input recipe per alternative. The solver keeps the
+ * cheapest recipe per node, so a group node holds its cheapest alternative, computed once per
+ * distinct ingredient. In first-match mode (ingredient_alternatives = "first") only the first
+ * alternative is added, which reproduces the old registry-order behaviour.
+ *
+ * Given the {@link RecipeGraphState} of the last scan, only the items downstream of changed
+ * recipes or ProjectE values are re-solved; everything else keeps its previous value.
  */
 public class RecipeEMCCalculator {
 
-    private final Level level;
+    // Recipes and registries captured on the server thread, and the extractors to index them with
+    private final List<RecipeHolder<?>> recipes;
     private final RegistryAccess registryAccess;
-    private final RecipeManager recipeManager;
+    private final RecipeExtractors extractors;
+    private final int indexThreads;
+
+    // Recipes of every type, built once per load and shared with the pack fingerprint (null until first use)
+    private RecipeIndex recipeIndex;
+
+    // ProjectE's values, and the value of each item key that is not a plain item (null until captured)
+    private ProjectEValueTable projectEValues;
+    private long[] variantValues;
+
+    // Canonical item keys; key IDs are the node IDs of the solver graph
+    private ItemKeyInterner itemKeys;
+
+    // Multi-alternative ingredients; group g is node itemNodeCount + g
+    private IngredientGroupInterner ingredientGroups;
+    private int itemNodeCount;
+
+    // Take the cheapest ingredient alternative (false: the first one, in ingredient order)
+    private final boolean cheapestAlternatives;
+
+    // On full solves, also solve in first-match mode and count the item values that differ
+    private final boolean compareFirstMatch;
+    private BitSet laterAlternatives;
+    private int firstMatchChanges = -1;
+
+    // Recipe graph (null until first lookup or after clearCache)
+    private EMCSolver solver;
+    private volatile boolean solved;
+    private boolean solveStarted;
+    private long solveNanos;
+
+    // Graph build in progress: recipes still to resolve, and the resolver state (null when not building)
+    private Iterator<RecipeIndex.IndexedRecipe> pendingRecipes;
+    private IngredientResolver ingredients;
+    private Map<IngredientResolver.Resolved, Integer> groupIds;
 
-    // Cache calculated values to avoid recalculation (using double for fractional precision)
-    private final Map<ItemStack, Double> calculatedEMC = new HashMap<>();
+    // Solve in first-match mode for the comparison (null until the main solve is done)
+    private EMCSolver firstMatchSolver;
 
-    // Track items currently being calculated (prevents infinite recursion)
-    private final Set<ItemStack> calculationStack = new HashSet<>();
+    // All recipes are resolved to graph recipes, so every item key is interned
+    private boolean recipesResolved;
+
+    // Graph recipes in solver order (recipe index == list index) and each node's fixed value
+    private List<GraphRecipe> graphRecipes;
+    private double[] fixedValues;
+
+    // Override value per item registry ID (null if none were given)
+    private long[] overrideValues;
+
+    // Item tags of the scan (null if none were given), and their members as item nodes by tag ID
+    private TagIndex tagIndex;
+    private Map<ResourceLocation, int[]> graphTags;
+
+    // Last scan's solved graph, and the nodes this graph changed relative to it (null for a full solve)
+    // The graph is only diffed against it when its interners were reused
+    private final RecipeGraphState previous;
+    private boolean reusedKeys;
+    private int[] changedNodes;
+
+    // Receives the time spent on each phase of the calculation
+    private final ScanProfiler profiler;
+
+    // Skipped and capped recipes, summarized once the scan completes
+    private final ScanEvents events = new ScanEvents();
+
+    // Stale variant and group nodes tolerated before the interners are rebuilt, if they are also the majority
+    private static final int MIN_STALE_NODES_TO_COMPACT = 256;
+
+    // Recipes resolved between deadline checks of a sliced graph build
+    private static final int RECIPES_PER_DEADLINE_CHECK = 64;
 
     // Minimum EMC value for any calculated item
     // Any item with calculated EMC < 1.0 gets rounded up to 1
-    private static final double MIN_EMC_VALUE = 1.0;
+    static final double MIN_EMC_VALUE = 1.0;
+
+    // ingredient_alternatives value selecting first-match mode
+    public static final String INGREDIENT_MODE_FIRST = "first";
 
-    public RecipeEMCCalculator(Level level) {
-        this.level = level;
+    // Recipe type of the per-alternative recipes feeding an ingredient group node
+    static final ResourceLocation ALTERNATIVE_RECIPE_TYPE =
+        ResourceLocation.fromNamespaceAndPath(CombinedPE.MOD_ID, "ingredient_alternative");
+
+    /**
+     * Capture the level's recipes and the calculator's config (server thread)
+     * Only copies the recipe list; indexing and the graph build happen later, off the server thread.
+     * @param level Level to read recipes and registries from
+     * @param previous Solved graph of the last scan to re-solve incrementally against, or null for a full solve
+     * @param profiler Profiler of the scan
+     */
+    public RecipeEMCCalculator(Level level, RecipeGraphState previous, ScanProfiler profiler) {
+        this.recipes = List.copyOf(level.getRecipeManager().getRecipes());
         this.registryAccess = level.registryAccess();
-        this.recipeManager = level.getRecipeManager();
+        this.extractors = RecipeExtractors.load();
+        this.indexThreads = getIndexThreads();
+        this.previous = previous;
+        this.profiler = profiler;
+        this.cheapestAlternatives = !INGREDIENT_MODE_FIRST.equals(Config.INGREDIENT_ALTERNATIVES.get());
+        this.compareFirstMatch = cheapestAlternatives && Config.COMPARE_FIRST_MATCH.get();
+    }
+
+    /**
+     * Worker threads to extract recipes on, from parallel_scan and scan_threads (server thread)
+     */
+    private static int getIndexThreads() {
+        if (!Config.PARALLEL_SCAN.get()) {
+            return 1;
+        }
+        int threads = Config.SCAN_THREADS.get();
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Get the recipe index of the load, building it on first use
+     * Works only on the captured recipes, so it may run on the scan thread
+     */
+    public synchronized RecipeIndex getRecipeIndex() {
+        if (recipeIndex == null) {
+            long startTime = System.nanoTime();
+            recipeIndex = RecipeIndex.build(recipes, registryAccess, extractors, events, indexThreads);
+            profiler.addPhase(ScanProfiler.Phase.RECIPE_INDEX, System.nanoTime() - startTime);
+        }
+        return recipeIndex;
+    }
+
+    /**
+     * Capture ProjectE's values for every item and for the item variants recipes use (server thread)
+     * Call once {@link #prepareStep} has returned true; the rest of the scan never queries ProjectE.
+     * @param ignoredItems Items whose current ProjectE value should be ignored
+     *                     (values we derived ourselves, which a rescan must recalculate)
+     */
+    public void captureProjectEValues(Predicate<Item> ignoredItems) {
+        prepare();
+
+        long startTime = System.nanoTime();
+        projectEValues = ProjectEValueTable.capture(ignoredItems);
+        variantValues = new long[itemKeys.size()];
+        for (int id = 0; id < variantValues.length; id++) {
+            ItemKey key = itemKeys.get(id);
+            if (!key.isPlain()) {
+                variantValues[id] = projectEValues.get(key.toStack());
+            }
+        }
+        profiler.addPhase(ScanProfiler.Phase.PROJECTE_TABLE, System.nanoTime() - startTime);
     }
 
     /**
@@ -52,62 +201,162 @@ public class RecipeEMCCalculator {
      * @return Calculated EMC value (double for fractional precision), or 0 if no valid recipe found
      */
     public double calculateEMC(ItemStack output) {
-        // Check cache first
-        if (calculatedEMC.containsKey(output)) {
-            return calculatedEMC.get(output);
+        // If item already has EMC from ProjectE, use that
+        long existingEMC = projectEValues.get(output);
+        if (existingEMC > 0) {
+            return existingEMC;
         }
 
-        // Check if already being calculated (prevent infinite recursion)
-        if (calculationStack.contains(output)) {
-            CombinedPE.LOGGER.warn("Circular recipe dependency detected for {}", output);
-            return 0.0;
+        EMCSolver solved = getSolver();
+        int node = itemKeys.find(output);
+
+        // Items that appear in no recipe and are not registered have no node
+        return node < 0 ? 0.0 : solved.getValue(node);
+    }
+
+    /**
+     * Resolve every recipe to item key IDs (see {@link #prepareStep})
+     */
+    public void prepare() {
+        prepareStep(EMCSolver.NO_DEADLINE);
+    }
+
+    /**
+     * Resolve recipes to item key IDs until all are done or the deadline passes
+     * Reads only the recipe index and frozen registries, so it may run on the scan thread; a
+     * server-thread scan resolves a slice at a time to spread the build over ticks.
+     * @param deadline {@link System#nanoTime()} at which to pause, or {@link EMCSolver#NO_DEADLINE}
+     * @return true once every recipe is resolved
+     */
+    public boolean prepareStep(long deadline) {
+        if (recipesResolved) {
+            return true;
         }
 
-        // If item already has EMC from ProjectE, use that
-        if (ProjectECompat.hasEMC(output)) {
-            double existingEMC = ProjectECompat.getEMCValue(output);
-            calculatedEMC.put(output, existingEMC);
-            return existingEMC;
+        getRecipeIndex();
+        long startTime = System.nanoTime();
+        if (pendingRecipes == null) {
+            beginGraph();
         }
+        recipesResolved = resolveRecipes(deadline);
+        profiler.addPhase(ScanProfiler.Phase.GRAPH_BUILD, System.nanoTime() - startTime);
+        return recipesResolved;
+    }
 
-        calculationStack.add(output);
+    /**
+     * Set the per-scan inputs of the graph: override values become fixed values, so recipes using
+     * an overridden item derive from its override, and item tags take part in tag inference
+     * @param overrideValues Override EMC value per item registry ID ({@link ItemRuleSet#NO_MATCH} for none)
+     * @param tagIndex Item tags of the scan
+     */
+    public void setScanInputs(long[] overrideValues, TagIndex tagIndex) {
+        this.overrideValues = overrideValues;
+        this.tagIndex = tagIndex;
+    }
 
-        try {
-            // Try different recipe types in order of preference
-            double emcValue = 0.0;
+    /**
+     * Build and solve the recipe graph now instead of on first lookup
+     * Once {@link #captureProjectEValues} has run, solving only touches the graph and may run on another thread
+     */
+    public void solve() {
+        getSolver();
+    }
 
-            // 1. Try crafting recipes first (most common)
-            emcValue = calculateFromCraftingRecipes(output);
+    /**
+     * Build and solve the recipe graph until it is done or the deadline passes
+     * Used by the server-thread scan to spread the work over ticks. ProjectE's values must have
+     * been captured first (see {@link #captureProjectEValues}).
+     * @param deadline {@link System#nanoTime()} at which to pause, or {@link EMCSolver#NO_DEADLINE}
+     * @return true once the graph is solved
+     */
+    public boolean solveStep(long deadline) {
+        if (solved) {
+            return true;
+        }
+        if (!prepareStep(deadline)) {
+            return false;
+        }
+        if (projectEValues == null) {
+            throw new IllegalStateException("ProjectE values must be captured before solving");
+        }
 
-            // 2. If no crafting recipe, try smelting
-            if (emcValue == 0.0) {
-                emcValue = calculateFromSmeltingRecipes(output);
+        long startTime = System.nanoTime();
+        if (solver == null) {
+            solver = finishGraph();
+            profiler.addPhase(ScanProfiler.Phase.GRAPH_BUILD, System.nanoTime() - startTime);
+            startTime = System.nanoTime();
+        }
+        if (!solveStarted) {
+            solveStarted = true;
+            if (changedNodes != null) {
+                solver.startIncremental(previous.getValues(), translateBestRecipes(), previous.getInferred(),
+                    changedNodes);
+            } else {
+                solver.startSolve();
             }
+        }
+        boolean done = solver.resume(deadline);
+        long nanos = System.nanoTime() - startTime;
+        solveNanos += nanos;
+        profiler.addPhase(ScanProfiler.Phase.SOLVE, nanos);
+        if (!done) {
+            return false;
+        }
 
-            // 3. If no smelting recipe, try smithing
-            if (emcValue == 0.0) {
-                emcValue = calculateFromSmithingRecipes(output);
+        // Incremental solves skip this: the comparison is a full solve of its own
+        if (compareFirstMatch && changedNodes == null) {
+            startTime = System.nanoTime();
+            if (firstMatchSolver == null) {
+                firstMatchSolver = buildFirstMatchSolver();
+                firstMatchSolver.startSolve();
             }
-
-            // Apply minimum EMC value - anything below 1.0 gets rounded to 1.0
-            if (emcValue > 0.0 && emcValue < MIN_EMC_VALUE) {
-                CombinedPE.LOGGER.debug("EMC for {} below minimum ({} < {}), rounding to {}",
-                    output, emcValue, MIN_EMC_VALUE, MIN_EMC_VALUE);
-                emcValue = MIN_EMC_VALUE;
+            done = firstMatchSolver.resume(deadline);
+            profiler.addPhase(ScanProfiler.Phase.SOLVE, System.nanoTime() - startTime);
+            if (!done) {
+                return false;
             }
+            firstMatchChanges = countFirstMatchChanges(firstMatchSolver);
+            firstMatchSolver = null;
+            CombinedPE.LOGGER.info("Cheapest ingredient alternatives: {} item values differ from first-match mode",
+                firstMatchChanges);
+        }
 
-            // Cache the result
-            calculatedEMC.put(output, emcValue);
+        finishSolve();
+        return true;
+    }
 
-            if (emcValue > 0.0) {
-                CombinedPE.LOGGER.debug("Calculated EMC for {}: {}", output, emcValue);
-            }
+    /**
+     * Get the recipe-derived EMC for a plain item from the solved graph
+     * Does not query ProjectE, so it is safe to call from scan workers after {@link #solve()}
+     * @return Solved EMC value, or 0 if no recipe gives the item a value
+     */
+    public double getRecipeEMC(Item item) {
+        int node = itemKeys.find(item);
+        return node < 0 || node >= itemNodeCount || solver.isInferred(node) ? 0.0 : solver.getValue(node);
+    }
 
-            return emcValue;
+    /**
+     * Get the EMC the solve inferred from a plain item's tags
+     * Safe to call from scan workers after {@link #solve()}
+     * @return Inferred EMC value, or 0 if the item's value was not inferred
+     */
+    public double getTagInferredEMC(Item item) {
+        int node = itemKeys.find(item);
+        return node < 0 || node >= itemNodeCount || !solver.isInferred(node) ? 0.0 : solver.getValue(node);
+    }
 
-        } finally {
-            calculationStack.remove(output);
-        }
+    /**
+     * Get the ProjectE values captured for this calculator (ignored items read as 0, null until captured)
+     */
+    public ProjectEValueTable getProjectEValues() {
+        return projectEValues;
+    }
+
+    /**
+     * Get the events recorded while indexing, building and solving the recipe graph
+     */
+    public ScanEvents getEvents() {
+        return events;
     }
 
     /**
@@ -119,176 +368,480 @@ public class RecipeEMCCalculator {
     }
 
     /**
-     * Calculate EMC from crafting recipes (shaped and shapeless)
+     * Get the solved recipe graph, building and solving it on first use
+     */
+    private EMCSolver getSolver() {
+        solveStep(EMCSolver.NO_DEADLINE);
+        return solver;
+    }
+
+    /**
+     * Log and count the results of a finished solve
+     */
+    private void finishSolve() {
+        profiler.addPhase(ScanProfiler.Phase.TAG_INFERENCE, solver.getInferenceNanos());
+        solved = true;
+
+        CombinedPE.LOGGER.info("Solved recipe graph: {} items ({} re-solved), {} recipes, {} recipe evaluations in {}ms",
+            solver.getNodeCount(), solver.getDirtyNodeCount(), solver.getRecipeCount(),
+            solver.getRelaxationCount(), solveNanos / 1_000_000L);
+        CombinedPE.LOGGER.info("Tag inference: {} items inferred from {} tags",
+            solver.getInferredNodeCount(), solver.getTagCount());
+        CombinedPE.LOGGER.info("Item key memo: {} lookups, {} distinct items, {}% hit rate",
+            itemKeys.getLookupCount(), itemKeys.size(), String.format("%.1f", itemKeys.getHitRate() * 100.0));
+
+        events.count(ScanEvents.Kind.CYCLE_CAPPED, solver.getCappedNodeCount());
+    }
+
+    /**
+     * Build the item -> recipe -> ingredient graph
+     * Items are identified by their interned item key ID
      */
-    private double calculateFromCraftingRecipes(ItemStack output) {
-        List<RecipeHolder<CraftingRecipe>> recipes = recipeManager
-            .getAllRecipesFor(RecipeType.CRAFTING);
+    private void beginGraph() {
+        // Reuse the last scan's keys and groups so node IDs match its solved values, unless keys of
+        // removed recipes dominate them: then start fresh, at the cost of one full solve
+        reusedKeys = previous != null && !shouldCompact(previous);
+        itemKeys = reusedKeys ? previous.getItemKeys() : new ItemKeyInterner();
+        ingredientGroups = reusedKeys ? previous.getIngredientGroups() : new IngredientGroupInterner();
+        itemKeys.resetStats();
+
+        // Every registered item gets a node, so plain lookups never miss
+        for (Item item : BuiltInRegistries.ITEM) {
+            itemKeys.intern(item);
+        }
 
-        for (RecipeHolder<CraftingRecipe> recipeHolder : recipes) {
-            CraftingRecipe recipe = recipeHolder.value();
-            ItemStack result = recipe.getResultItem(registryAccess);
+        // Resolve recipes to key IDs first, since this interns any component variants they use
+        // Shared ingredient instances are resolved once; the resolver is dropped with the graph build
+        ingredients = new IngredientResolver(itemKeys);
+        groupIds = new IdentityHashMap<>();
+        graphRecipes = new ArrayList<>();
+        pendingRecipes = recipeIndex.getAllRecipes().iterator();
+    }
 
-            // Check if this recipe produces our target item
-            if (ItemStack.isSameItemSameComponents(result, output)) {
-                double ingredientEMC = calculateIngredientEMC(recipe.getIngredients());
+    /**
+     * Check if the last scan's interners hold mostly keys no recipe uses any more
+     */
+    private static boolean shouldCompact(RecipeGraphState state) {
+        int stale = state.countStaleNodes();
+        int variants = state.getNodeCount() - BuiltInRegistries.ITEM.size();
+        if (stale < MIN_STALE_NODES_TO_COMPACT || stale * 2 <= variants) {
+            return false;
+        }
+        CombinedPE.LOGGER.info("{} of {} item variant and ingredient nodes are stale, rebuilding the recipe graph",
+            stale, variants);
+        return true;
+    }
 
-                if (ingredientEMC > 0.0) {
-                    int outputCount = result.getCount();
-                    double multiplier = Config.CRAFTING_MULTIPLIER.get();
+    /**
+     * Resolve pending recipes to graph recipes until all are done or the deadline passes
+     * @return true once every recipe is resolved
+     */
+    private boolean resolveRecipes(long deadline) {
+        int resolved = 0;
+        while (pendingRecipes.hasNext()) {
+            if (++resolved % RECIPES_PER_DEADLINE_CHECK == 0 && System.nanoTime() >= deadline) {
+                return false;
+            }
 
-                    double emcPerItem = (ingredientEMC * multiplier) / outputCount;
-                    return emcPerItem;
+            RecipeIndex.IndexedRecipe recipe = pendingRecipes.next();
+            try {
+                GraphRecipe graphRecipe = toGraphRecipe(recipe, ingredients, groupIds);
+                if (graphRecipe != null) {
+                    graphRecipes.add(graphRecipe);
+                } else {
+                    events.count(ScanEvents.Kind.RECIPE_WITHOUT_INGREDIENTS, 1);
                 }
+            } catch (Exception e) {
+                // Skip recipes that cause exceptions (e.g., incompatible modded recipes)
+                events.record(ScanEvents.Kind.RECIPE_RESOLVE_FAILED, recipe.id() + ": " + e.getMessage());
             }
         }
-
-        return 0.0;
+        return true;
     }
 
     /**
-     * Calculate EMC from smelting recipes (furnace, blast furnace, smoker)
-     * Uses generic Recipe handling to support modded recipe types
+     * Turn the resolved recipes into the solver graph, with fixed values and tags
      */
-    private double calculateFromSmeltingRecipes(ItemStack output) {
-        // Check all smelting recipe types
-        RecipeType<?>[] smeltingTypes = {
-            RecipeType.SMELTING,
-            RecipeType.BLASTING,
-            RecipeType.SMOKING
-        };
+    private EMCSolver finishGraph() {
+        CombinedPE.LOGGER.debug("Resolved {} distinct ingredients for {} ingredient uses",
+            ingredients.getIngredientCount(), ingredients.getLookupCount());
+        Collection<Integer> usedGroups = groupIds.values();
+        pendingRecipes = null;
+        ingredients = null;
+        groupIds = null;
+
+        // Every item key is interned now; group nodes follow the item nodes
+        itemNodeCount = itemKeys.size();
+        int nodeCount = itemNodeCount + ingredientGroups.size();
+        for (GraphRecipe recipe : graphRecipes) {
+            int[] inputs = recipe.inputs();
+            for (int i = 0; i < inputs.length; i++) {
+                if (inputs[i] < 0) {
+                    inputs[i] = itemNodeCount + (-inputs[i] - 1);
+                }
+            }
+        }
+        addAlternativeRecipes(usedGroups);
+
+        EMCSolver graph = new EMCSolver(nodeCount, MIN_EMC_VALUE);
+        fixedValues = new double[nodeCount];
+
+        // Overridden items and items that already have EMC from ProjectE are fixed
+        // Overrides win over ProjectE's own values, as they do when registered (CombinedPEMapper)
+        for (int id = 0; id < itemNodeCount; id++) {
+            ItemKey key = itemKeys.get(id);
+            long existingEMC = key.isPlain() ? getOverride(key.getItem()) : 0;
+            if (existingEMC <= 0) {
+                existingEMC = key.isPlain() ? projectEValues.get(key.getItem()) : variantValues[id];
+            }
+            if (existingEMC > 0) {
+                graph.setFixedValue(id, existingEMC);
+                fixedValues[id] = existingEMC;
+            }
+        }
+
+        for (GraphRecipe recipe : graphRecipes) {
+            graph.addRecipe(recipe.output(), recipe.outputCount(), recipe.multiplier(),
+                recipe.inputs(), recipe.inputCounts());
+        }
+
+        graphTags = tagIndex != null ? TagEMCInferrer.resolveTags(tagIndex, itemKeys) : Map.of();
+        for (int[] members : graphTags.values()) {
+            graph.addTag(members);
+        }
+
+        // Group node IDs shift when item keys were added, so only an unchanged item set can be diffed
+        if (reusedKeys && previous.getItemNodeCount() == itemNodeCount) {
+            changedNodes = findChangedNodes();
+            CombinedPE.LOGGER.info("Recipe graph diff: {} changed items since the last scan", changedNodes.length);
+        } else if (reusedKeys) {
+            CombinedPE.LOGGER.info("New item variants since the last scan, solving the full recipe graph");
+        }
 
-        for (RecipeType<?> recipeType : smeltingTypes) {
-            double emcValue = calculateFromSmeltingType(output, recipeType);
-            if (emcValue > 0.0) {
-                return emcValue;
+        return graph;
+    }
+
+    /**
+     * Add one recipe per alternative into each used group node (only the first in first-match mode)
+     * Later alternatives are marked, so the first-match comparison can leave them out.
+     */
+    private void addAlternativeRecipes(Collection<Integer> usedGroups) {
+        laterAlternatives = new BitSet();
+        List<Integer> groups = new ArrayList<>(usedGroups);
+        Collections.sort(groups);
+
+        for (int group : groups) {
+            int[] keys = ingredientGroups.getKeys(group);
+            int[] counts = ingredientGroups.getCounts(group);
+            int alternatives = cheapestAlternatives ? keys.length : 1;
+
+            for (int a = 0; a < alternatives; a++) {
+                if (a > 0) {
+                    laterAlternatives.set(graphRecipes.size());
+                }
+                graphRecipes.add(new GraphRecipe(
+                    ResourceLocation.fromNamespaceAndPath(CombinedPE.MOD_ID, "ingredient/" + group + "/" + a),
+                    ALTERNATIVE_RECIPE_TYPE,
+                    itemNodeCount + group,
+                    1,
+                    1.0,
+                    new int[] {keys[a]},
+                    new int[] {counts[a]}
+                ));
             }
         }
+    }
 
-        return 0.0;
+    /**
+     * Build the graph again with only the first alternative of each ingredient
+     */
+    private EMCSolver buildFirstMatchSolver() {
+        EMCSolver firstMatch = new EMCSolver(fixedValues.length, MIN_EMC_VALUE);
+        for (int id = 0; id < fixedValues.length; id++) {
+            if (fixedValues[id] > 0) {
+                firstMatch.setFixedValue(id, fixedValues[id]);
+            }
+        }
+        for (int r = 0; r < graphRecipes.size(); r++) {
+            if (!laterAlternatives.get(r)) {
+                GraphRecipe recipe = graphRecipes.get(r);
+                firstMatch.addRecipe(recipe.output(), recipe.outputCount(), recipe.multiplier(),
+                    recipe.inputs(), recipe.inputCounts());
+            }
+        }
+        for (int[] members : graphTags.values()) {
+            firstMatch.addTag(members);
+        }
+        return firstMatch;
     }
 
     /**
-     * Calculate EMC from a specific smelting recipe type
-     * Uses generic Recipe handling to support modded recipe types (like Malum's MetalNodeBlastingRecipe)
+     * @param firstMatch Solved first-match graph
+     * @return Number of recipe-derived item values that differ from the cheapest-alternative solve
      */
-    @SuppressWarnings({"unchecked", "rawtypes"})
-    private double calculateFromSmeltingType(ItemStack output, RecipeType<?> recipeType) {
-        // Get all recipes for this type (use raw type to handle wildcard properly)
-        List<RecipeHolder> recipes = recipeManager.getAllRecipesFor((RecipeType) recipeType);
+    private int countFirstMatchChanges(EMCSolver firstMatch) {
+        int changes = 0;
+        for (int id = 0; id < itemNodeCount; id++) {
+            double cheapest = solver.getValue(id);
+            double first = firstMatch.getValue(id);
+            if (itemKeys.get(id).isPlain() && !solver.isFixed(id)
+                    && Math.abs(cheapest - first) > 1e-9 * Math.max(cheapest, first)) {
+                changes++;
+            }
+        }
+        return changes;
+    }
 
-        for (RecipeHolder recipeHolder : recipes) {
-            try {
-                Recipe<?> recipe = recipeHolder.value();
-                ItemStack result = recipe.getResultItem(registryAccess);
+    /**
+     * Number of item values that differ from first-match mode, or -1 if not compared
+     * (first-match mode, comparison disabled, or an incremental solve)
+     */
+    public int getFirstMatchChanges() {
+        return firstMatchChanges;
+    }
 
-                if (ItemStack.isSameItemSameComponents(result, output)) {
-                    // Check if recipe has ingredients (skip if not)
-                    List<Ingredient> ingredients = recipe.getIngredients();
-                    if (ingredients == null || ingredients.isEmpty()) {
-                        continue;
-                    }
+    /**
+     * Override value of a plain item, or 0 if it has none
+     */
+    private long getOverride(Item item) {
+        if (overrideValues == null) {
+            return 0;
+        }
+        int registryId = BuiltInRegistries.ITEM.getId(item);
+        if (registryId < 0 || registryId >= overrideValues.length) {
+            return 0;
+        }
+        return Math.max(overrideValues[registryId], 0);
+    }
 
-                    double ingredientEMC = calculateIngredientEMC(ingredients);
+    /**
+     * Find nodes whose recipes, tags or fixed value differ from the previous scan, or that are new
+     */
+    private int[] findChangedNodes() {
+        boolean[] changed = new boolean[fixedValues.length];
+        Set<ResourceLocation> currentIds = new HashSet<>(graphRecipes.size() * 2);
+
+        // Added or changed recipes change their output (and the old output, if it moved)
+        for (GraphRecipe recipe : graphRecipes) {
+            currentIds.add(recipe.id());
+            GraphRecipe old = previous.getRecipe(recipe.id());
+            if (old == null || !old.sameAs(recipe)) {
+                changed[recipe.output()] = true;
+                if (old != null) {
+                    changed[old.output()] = true;
+                }
+            }
+        }
 
-                    if (ingredientEMC > 0.0) {
-                        int outputCount = result.getCount();
-                        double multiplier = Config.SMELTING_MULTIPLIER.get();
+        // Removed recipes change their output
+        for (GraphRecipe old : previous.getRecipes()) {
+            if (!currentIds.contains(old.id())) {
+                changed[old.output()] = true;
+            }
+        }
 
-                        double emcPerItem = (ingredientEMC * multiplier) / outputCount;
-                        return emcPerItem;
-                    }
+        // Members of added, changed or removed tags
+        for (Map.Entry<ResourceLocation, int[]> tag : graphTags.entrySet()) {
+            int[] old = previous.getTag(tag.getKey());
+            if (old == null || !Arrays.equals(old, tag.getValue())) {
+                markAll(changed, tag.getValue());
+                if (old != null) {
+                    markAll(changed, old);
                 }
-            } catch (Exception e) {
-                // Log and skip recipes that cause exceptions (e.g., incompatible modded recipes)
-                CombinedPE.LOGGER.warn("Skipping recipe due to error: {}", e.getMessage());
-                continue;
             }
         }
+        for (Map.Entry<ResourceLocation, int[]> old : previous.getTags().entrySet()) {
+            if (!graphTags.containsKey(old.getKey())) {
+                markAll(changed, old.getValue());
+            }
+        }
+
+        // New nodes, and nodes whose ProjectE value appeared, disappeared or changed
+        for (int id = 0; id < changed.length; id++) {
+            if (id >= previous.getNodeCount() || previous.getFixedValue(id) != fixedValues[id]) {
+                changed[id] = true;
+            }
+        }
+
+        int count = 0;
+        for (boolean flag : changed) {
+            if (flag) {
+                count++;
+            }
+        }
+        int[] nodes = new int[count];
+        int next = 0;
+        for (int id = 0; id < changed.length; id++) {
+            if (changed[id]) {
+                nodes[next++] = id;
+            }
+        }
+        return nodes;
+    }
 
-        return 0.0;
+    private static void markAll(boolean[] changed, int[] nodes) {
+        for (int node : nodes) {
+            changed[node] = true;
+        }
     }
 
     /**
-     * Calculate EMC from smithing recipes
+     * Map the previous scan's best recipe IDs to recipe indices of this graph
      */
-    private double calculateFromSmithingRecipes(ItemStack output) {
-        List<RecipeHolder<SmithingRecipe>> recipes = recipeManager
-            .getAllRecipesFor(RecipeType.SMITHING);
+    private int[] translateBestRecipes() {
+        Map<ResourceLocation, Integer> indexById = new HashMap<>(graphRecipes.size() * 2);
+        for (int r = 0; r < graphRecipes.size(); r++) {
+            indexById.put(graphRecipes.get(r).id(), r);
+        }
 
-        for (RecipeHolder<SmithingRecipe> recipeHolder : recipes) {
-            SmithingRecipe recipe = recipeHolder.value();
-            ItemStack result = recipe.getResultItem(registryAccess);
+        int[] best = new int[fixedValues.length];
+        Arrays.fill(best, -1);
+        for (int node = 0; node < previous.getNodeCount(); node++) {
+            ResourceLocation id = previous.getBestRecipe(node);
+            if (id != null) {
+                best[node] = indexById.getOrDefault(id, -1);
+            }
+        }
+        return best;
+    }
 
-            if (ItemStack.isSameItemSameComponents(result, output)) {
-                double ingredientEMC = calculateIngredientEMC(recipe.getIngredients());
+    /**
+     * Capture the solved graph for the next scan to diff against (after {@link #solve()})
+     */
+    public RecipeGraphState getGraphState() {
+        EMCSolver solved = getSolver();
 
-                if (ingredientEMC > 0.0) {
-                    int outputCount = result.getCount();
-                    // Use crafting multiplier for smithing (no separate config yet)
-                    double multiplier = Config.CRAFTING_MULTIPLIER.get();
+        Map<ResourceLocation, GraphRecipe> recipes = new HashMap<>(graphRecipes.size() * 2);
+        for (GraphRecipe recipe : graphRecipes) {
+            recipes.put(recipe.id(), recipe);
+        }
 
-                    double emcPerItem = (ingredientEMC * multiplier) / outputCount;
-                    return emcPerItem;
-                }
+        double[] values = new double[solved.getNodeCount()];
+        ResourceLocation[] bestRecipes = new ResourceLocation[solved.getNodeCount()];
+        BitSet inferred = new BitSet();
+        for (int node = 0; node < values.length; node++) {
+            values[node] = solved.getValue(node);
+            int best = solved.getBestRecipe(node);
+            if (best >= 0) {
+                bestRecipes[node] = graphRecipes.get(best).id();
+            }
+            if (solved.isInferred(node)) {
+                inferred.set(node);
             }
         }
 
-        return 0.0;
+        return new RecipeGraphState(itemKeys, ingredientGroups, itemNodeCount, recipes, graphTags,
+            fixedValues, values, bestRecipes, inferred);
     }
 
     /**
-     * Calculate total EMC of recipe ingredients
+     * A recipe resolved to item key IDs
      */
-    private double calculateIngredientEMC(List<Ingredient> ingredients) {
-        double totalEMC = 0.0;
+    record GraphRecipe(ResourceLocation id, ResourceLocation type, int output, int outputCount, double multiplier,
+                       int[] inputs, int[] inputCounts) {
+
+        /**
+         * Check if two graph recipes have the same type, output, counts, multiplier and ingredients
+         */
+        boolean sameAs(GraphRecipe other) {
+            return type.equals(other.type)
+                && output == other.output
+                && outputCount == other.outputCount
+                && Double.compare(multiplier, other.multiplier) == 0
+                && Arrays.equals(inputs, other.inputs)
+                && Arrays.equals(inputCounts, other.inputCounts);
+        }
+    }
 
-        for (Ingredient ingredient : ingredients) {
-            // Get the first matching item from the ingredient
-            ItemStack[] matchingStacks = ingredient.getItems();
+    /**
+     * Resolve one indexed recipe to item key IDs
+     * @return Graph recipe, or null if the recipe has no ingredients to derive a value from
+     */
+    private GraphRecipe toGraphRecipe(RecipeIndex.IndexedRecipe recipe, IngredientResolver ingredients,
+                                      Map<IngredientResolver.Resolved, Integer> groupIds) {
+        List<ExtractedRecipe.Input> recipeInputs = recipe.inputs();
+        if (recipeInputs == null || recipeInputs.isEmpty()) {
+            return null;
+        }
+
+        int[] inputs = new int[recipeInputs.size()];
+        int[] inputCounts = new int[recipeInputs.size()];
+        int size = 0;
+
+        for (ExtractedRecipe.Input input : recipeInputs) {
+            IngredientResolver.Resolved resolved = ingredients.resolve(input.ingredient());
 
-            if (matchingStacks.length == 0) {
+            if (resolved.isEmpty()) {
                 // Empty ingredient, skip
                 continue;
             }
 
-            // Use the first matching stack
-            ItemStack ingredientStack = matchingStacks[0];
-
-            // Get EMC for this ingredient (may trigger recursive calculation)
-            double ingredientEMC = 0.0;
-
-            if (ProjectECompat.hasEMC(ingredientStack)) {
-                // Item already has EMC from ProjectE
-                ingredientEMC = ProjectECompat.getEMCValue(ingredientStack);
+            if (resolved.keys().length == 1) {
+                inputs[size] = resolved.keys()[0];
+                inputCounts[size] = resolved.counts()[0] * input.count();
             } else {
-                // Recursively calculate EMC
-                ingredientEMC = calculateEMC(ingredientStack);
-            }
-
-            // If any ingredient has no EMC, recipe is invalid
-            if (ingredientEMC == 0.0) {
-                return 0.0;
+                // Group node, stored as -(group + 1) until the item node count is known
+                int group = groupIds.computeIfAbsent(resolved, ingredientGroups::intern);
+                inputs[size] = -(group + 1);
+                inputCounts[size] = input.count();
             }
+            size++;
+        }
 
-            totalEMC += ingredientEMC * ingredientStack.getCount();
+        // A recipe without any real ingredients has no cost to derive a value from
+        if (size == 0) {
+            return null;
         }
 
-        return totalEMC;
+        return new GraphRecipe(
+            recipe.id(),
+            recipe.type(),
+            itemKeys.intern(recipe.result()),
+            recipe.outputCount(),
+            recipe.multiplier(),
+            Arrays.copyOf(inputs, size),
+            Arrays.copyOf(inputCounts, size)
+        );
     }
 
     /**
      * Clear all cached calculations
      */
     public void clearCache() {
-        calculatedEMC.clear();
-        calculationStack.clear();
+        solved = false;
+        solver = null;
+        solveStarted = false;
+        solveNanos = 0;
+        firstMatchSolver = null;
+        pendingRecipes = null;
+        recipesResolved = false;
+        variantValues = null;
+        ingredients = null;
+        groupIds = null;
+        itemKeys = null;
+        ingredientGroups = null;
+        laterAlternatives = null;
+        graphRecipes = null;
+        graphTags = null;
+        fixedValues = null;
+        changedNodes = null;
     }
 
     /**
      * Get all calculated EMC values (as doubles for precision)
+     * Only includes values derived from recipes, not ProjectE's own values or tag-inferred ones
      */
-    public Map<ItemStack, Double> getCalculatedEMC() {
-        return new HashMap<>(calculatedEMC);
+    public Map<Item, Double> getCalculatedEMC() {
+        Map<Item, Double> calculated = new HashMap<>();
+        EMCSolver solved = getSolver();
+
+        for (int id = 0; id < itemNodeCount; id++) {
+            ItemKey key = itemKeys.get(id);
+            if (key.isPlain() && !solved.isFixed(id) && !solved.isInferred(id) && solved.getValue(id) > 0.0) {
+                calculated.put(key.getItem(), solved.getValue(id));
+            }
+        }
+
+        return calculated;
     }
 }
@@ -0,0 +1,40 @@
+package com.riley.combinedpe.emc;
+
+import net.minecraft.core.RegistryAccess;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.crafting.Recipe;
+
+import java.util.Collection;
+
+/**
+ * Turns recipes of specific recipe types into {@link ExtractedRecipe}s for the recipe graph
+ *
+ * Other mods can add extractors for their machine recipes through ServiceLoader
+ * (META-INF/services/com.riley.combinedpe.emc.RecipeExtractor). A service-loaded extractor
+ * replaces the built-in one for the recipe types it claims. Recipe types nobody claims are
+ * read generically from {@link Recipe#getIngredients()} and the result item.
+ *
+ * Extractors are called while the recipe index is built, on the scan thread unless background_scan
+ * is disabled, and on several worker threads at once with parallel_scan enabled, so they must only
+ * read the recipe and the registries passed in.
+ */
+public interface RecipeExtractor {
+
+    /**
+     * IDs of the recipe types this extractor reads (e.g. "mekanism:crushing")
+     */
+    Collection<ResourceLocation> getRecipeTypes();
+
+    /**
+     * Multiplier for a recipe type when the config does not set one
+     */
+    default double getDefaultMultiplier(ResourceLocation recipeType) {
+        return 1.0;
+    }
+
+    /**
+     * Extract one recipe
+     * @return Normalized recipe, or null to leave the recipe out of the graph
+     */
+    ExtractedRecipe extract(Recipe<?> recipe, RegistryAccess registryAccess);
+}
@@ -0,0 +1,226 @@
+package com.riley.combinedpe.emc;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.mojang.serialization.JsonOps;
+import com.mojang.serialization.MapCodec;
+import com.riley.combinedpe.CombinedPE;
+import com.riley.combinedpe.Config;
+import net.minecraft.core.RegistryAccess;
+import net.minecraft.resources.RegistryOps;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.crafting.Ingredient;
+import net.minecraft.world.item.crafting.Recipe;
+import net.minecraft.world.item.crafting.SmithingTransformRecipe;
+import net.neoforged.neoforge.common.ModConfigSpec;
+
+import java.util.*;
+
+/**
+ * Recipe extractors for one recipe index build, looked up by recipe type ID
+ *
+ * Built-in extractors cover the vanilla recipe types; service-loaded {@link RecipeExtractor}s
+ * from other mods take over the types they claim. Any other recipe type is read generically
+ * (ingredients plus result item), so modded processing recipes still reach the recipe graph.
+ *
+ * Multipliers come from the per-type config entries first, then the extractor's default.
+ */
+public final class RecipeExtractors {
+
+    private static final RecipeExtractor GENERIC = new StandardExtractor(Config.CRAFTING_MULTIPLIER);
+
+    // Extractors from other mods (loaded once, on first use)
+    private static List<RecipeExtractor> serviceExtractors;
+
+    private final Map<ResourceLocation, RecipeExtractor> byType;
+    private final Map<ResourceLocation, Double> multipliers;
+    private final Set<ResourceLocation> ignoredTypes;
+
+    private RecipeExtractors(Map<ResourceLocation, RecipeExtractor> byType,
+                             Map<ResourceLocation, Double> multipliers, Set<ResourceLocation> ignoredTypes) {
+        this.byType = byType;
+        this.multipliers = multipliers;
+        this.ignoredTypes = ignoredTypes;
+    }
+
+    /**
+     * Collect the extractors and read the recipe type config (server thread)
+     */
+    public static RecipeExtractors load() {
+        Map<ResourceLocation, RecipeExtractor> byType = new HashMap<>();
+        register(byType, new StandardExtractor(Config.CRAFTING_MULTIPLIER, "crafting", "stonecutting"));
+        register(byType, new StandardExtractor(Config.SMELTING_MULTIPLIER,
+            "smelting", "blasting", "smoking", "campfire_cooking"));
+        register(byType, new SmithingExtractor());
+        for (RecipeExtractor extractor : getServiceExtractors()) {
+            register(byType, extractor);
+        }
+
+        Map<ResourceLocation, Double> multipliers = new HashMap<>();
+        for (String entry : Config.RECIPE_TYPE_MULTIPLIERS.get()) {
+            String[] parts = entry.split("=", 2);
+            ResourceLocation type = parts.length == 2 ? ResourceLocation.tryParse(parts[0].trim()) : null;
+            try {
+                double multiplier = type == null ? -1 : Double.parseDouble(parts[1].trim());
+                if (multiplier > 0) {
+                    multipliers.put(type, multiplier);
+                    continue;
+                }
+            } catch (NumberFormatException ignored) {
+                // Reported below
+            }
+            CombinedPE.LOGGER.warn("Ignoring invalid recipe type multiplier {}", entry);
+        }
+
+        Set<ResourceLocation> ignoredTypes = new HashSet<>();
+        for (String entry : Config.IGNORED_RECIPE_TYPES.get()) {
+            ResourceLocation type = ResourceLocation.tryParse(entry.trim());
+            if (type != null) {
+                ignoredTypes.add(type);
+            } else {
+                CombinedPE.LOGGER.warn("Ignoring invalid recipe type {}", entry);
+            }
+        }
+
+        return new RecipeExtractors(byType, multipliers, ignoredTypes);
+    }
+
+    /**
+     * Get the extractor for a recipe type
+     * @return Extractor, or null if the type is ignored in the config
+     */
+    public RecipeExtractor get(ResourceLocation recipeType) {
+        if (ignoredTypes.contains(recipeType)) {
+            return null;
+        }
+        return byType.getOrDefault(recipeType, GENERIC);
+    }
+
+    /**
+     * Get the multiplier for a recipe type (config entry, else the extractor's default)
+     */
+    public double getMultiplier(ResourceLocation recipeType, RecipeExtractor extractor) {
+        Double multiplier = multipliers.get(recipeType);
+        return multiplier != null ? multiplier : extractor.getDefaultMultiplier(recipeType);
+    }
+
+    /**
+     * Class names of the extractors loaded from other mods, in load order
+     */
+    public static List<String> getServiceExtractorClasses() {
+        List<String> names = new ArrayList<>();
+        for (RecipeExtractor extractor : getServiceExtractors()) {
+            names.add(extractor.getClass().getName());
+        }
+        return names;
+    }
+
+    private static void register(Map<ResourceLocation, RecipeExtractor> byType, RecipeExtractor extractor) {
+        for (ResourceLocation type : extractor.getRecipeTypes()) {
+            byType.put(type, extractor);
+        }
+    }
+
+    private static synchronized List<RecipeExtractor> getServiceExtractors() {
+        if (serviceExtractors == null) {
+            List<RecipeExtractor> extractors = new ArrayList<>();
+            ServiceLoader<RecipeExtractor> loader =
+                ServiceLoader.load(RecipeExtractor.class, RecipeExtractor.class.getClassLoader());
+            for (Iterator<RecipeExtractor> it = loader.iterator(); it.hasNext(); ) {
+                try {
+                    RecipeExtractor extractor = it.next();
+                    extractors.add(extractor);
+                    CombinedPE.LOGGER.info("Loaded recipe extractor {} for {}",
+                        extractor.getClass().getName(), extractor.getRecipeTypes());
+                } catch (ServiceConfigurationError e) {
+                    CombinedPE.LOGGER.error("Failed to load a recipe extractor", e);
+                }
+            }
+            serviceExtractors = List.copyOf(extractors);
+        }
+        return serviceExtractors;
+    }
+
+    /**
+     * Reads a recipe's ingredients and result item, each ingredient consumed once
+     */
+    private static final class StandardExtractor implements RecipeExtractor {
+
+        private final ModConfigSpec.DoubleValue multiplier;
+        private final List<ResourceLocation> recipeTypes;
+
+        StandardExtractor(ModConfigSpec.DoubleValue multiplier, String... vanillaTypes) {
+            this.multiplier = multiplier;
+            this.recipeTypes = Arrays.stream(vanillaTypes).map(ResourceLocation::withDefaultNamespace).toList();
+        }
+
+        @Override
+        public Collection<ResourceLocation> getRecipeTypes() {
+            return recipeTypes;
+        }
+
+        @Override
+        public double getDefaultMultiplier(ResourceLocation recipeType) {
+            return multiplier.get();
+        }
+
+        @Override
+        public ExtractedRecipe extract(Recipe<?> recipe, RegistryAccess registryAccess) {
+            ItemStack result = recipe.getResultItem(registryAccess);
+            if (result == null || result.isEmpty()) {
+                return null;
+            }
+            return ExtractedRecipe.of(recipe.getIngredients(), result);
+        }
+    }
+
+    /**
+     * Reads smithing transform recipes (template + base + addition)
+     * Trim recipes give back the base item, so there is nothing to derive from them
+     */
+    private static final class SmithingExtractor implements RecipeExtractor {
+
+        private static final List<String> INGREDIENT_FIELDS = List.of("template", "base", "addition");
+
+        @Override
+        public Collection<ResourceLocation> getRecipeTypes() {
+            return List.of(ResourceLocation.withDefaultNamespace("smithing"));
+        }
+
+        @Override
+        public double getDefaultMultiplier(ResourceLocation recipeType) {
+            return Config.SMITHING_MULTIPLIER.get();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public ExtractedRecipe extract(Recipe<?> recipe, RegistryAccess registryAccess) {
+            if (!(recipe instanceof SmithingTransformRecipe)) {
+                return null;
+            }
+            ItemStack result = recipe.getResultItem(registryAccess);
+            if (result == null || result.isEmpty()) {
+                return null;
+            }
+
+            // Smithing recipes do not expose their ingredients (getIngredients is empty),
+            // so read them back through the recipe's own codec
+            RegistryOps<JsonElement> ops = registryAccess.createSerializationContext(JsonOps.INSTANCE);
+            MapCodec<Recipe<?>> codec = (MapCodec<Recipe<?>>) recipe.getSerializer().codec();
+            JsonElement json = codec.codec().encodeStart(ops, recipe).result().orElse(null);
+            if (!(json instanceof JsonObject object)) {
+                return null;
+            }
+
+            List<Ingredient> ingredients = new ArrayList<>(INGREDIENT_FIELDS.size());
+            for (String field : INGREDIENT_FIELDS) {
+                JsonElement element = object.get(field);
+                if (element != null) {
+                    Ingredient.CODEC.parse(ops, element).result().ifPresent(ingredients::add);
+                }
+            }
+            return ExtractedRecipe.of(ingredients, result);
+        }
+    }
+}
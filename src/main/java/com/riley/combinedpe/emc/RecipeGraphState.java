@@ -0,0 +1,215 @@
+package com.riley.combinedpe.emc;
+
+import net.minecraft.resources.ResourceLocation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Solved recipe graph kept from the last scan
+ *
+ * Holds what the next scan needs to diff against and re-solve incrementally:
+ * - The item key and ingredient group interners, so node IDs stay stable between scans
+ * - Every graph recipe by recipe ID, and every item tag's member nodes by tag ID
+ * - Fixed (ProjectE) and solved values, each node's best recipe ID, and the nodes inferred from tags
+ *
+ * Recipe objects, ingredients and the ProjectE table are not kept, but the graph recipes are
+ * enough to re-solve after a single fixed value changes (see {@link #withFixedValue}).
+ */
+public final class RecipeGraphState {
+
+    private final ItemKeyInterner itemKeys;
+    private final IngredientGroupInterner ingredientGroups;
+    private final int itemNodeCount;
+    private final Map<ResourceLocation, RecipeEMCCalculator.GraphRecipe> recipes;
+    private final Map<ResourceLocation, int[]> tags;
+    private final double[] fixedValues;
+    private final double[] values;
+    private final ResourceLocation[] bestRecipes;
+    private final BitSet inferred;
+
+    RecipeGraphState(ItemKeyInterner itemKeys, IngredientGroupInterner ingredientGroups, int itemNodeCount,
+                     Map<ResourceLocation, RecipeEMCCalculator.GraphRecipe> recipes, Map<ResourceLocation, int[]> tags,
+                     double[] fixedValues, double[] values, ResourceLocation[] bestRecipes, BitSet inferred) {
+        this.itemKeys = itemKeys;
+        this.ingredientGroups = ingredientGroups;
+        this.itemNodeCount = itemNodeCount;
+        this.recipes = recipes;
+        this.tags = tags;
+        this.fixedValues = fixedValues;
+        this.values = values;
+        this.bestRecipes = bestRecipes;
+        this.inferred = inferred;
+    }
+
+    ItemKeyInterner getItemKeys() {
+        return itemKeys;
+    }
+
+    IngredientGroupInterner getIngredientGroups() {
+        return ingredientGroups;
+    }
+
+    /**
+     * Number of item nodes; ingredient group nodes follow them
+     */
+    int getItemNodeCount() {
+        return itemNodeCount;
+    }
+
+    RecipeEMCCalculator.GraphRecipe getRecipe(ResourceLocation id) {
+        return recipes.get(id);
+    }
+
+    Collection<RecipeEMCCalculator.GraphRecipe> getRecipes() {
+        return recipes.values();
+    }
+
+    /**
+     * Member nodes of a tag, or null if the tag was not in the graph
+     */
+    int[] getTag(ResourceLocation id) {
+        return tags.get(id);
+    }
+
+    Map<ResourceLocation, int[]> getTags() {
+        return tags;
+    }
+
+    /**
+     * Number of nodes (items and ingredient groups) in the solved graph
+     */
+    int getNodeCount() {
+        return values.length;
+    }
+
+    double getFixedValue(int node) {
+        return fixedValues[node];
+    }
+
+    double[] getValues() {
+        return values;
+    }
+
+    /**
+     * Nodes whose value was inferred from their tags
+     */
+    BitSet getInferred() {
+        return inferred;
+    }
+
+    /**
+     * Get the ID of the recipe that gave a node its value (null for fixed, inferred or unresolved nodes)
+     */
+    ResourceLocation getBestRecipe(int node) {
+        return bestRecipes[node];
+    }
+
+    public int getRecipeCount() {
+        return recipes.size();
+    }
+
+    /**
+     * Count the component variant and ingredient group nodes no recipe or tag of this graph uses
+     * The interners are reused by the next scan, so keys of removed recipes stay until they are rebuilt.
+     */
+    int countStaleNodes() {
+        BitSet live = new BitSet(values.length);
+        for (RecipeEMCCalculator.GraphRecipe recipe : recipes.values()) {
+            live.set(recipe.output());
+            for (int input : recipe.inputs()) {
+                live.set(input);
+            }
+            if (recipe.output() >= itemNodeCount) {
+                for (int key : ingredientGroups.getKeys(recipe.output() - itemNodeCount)) {
+                    live.set(key);
+                }
+            }
+        }
+        for (int[] members : tags.values()) {
+            for (int member : members) {
+                live.set(member);
+            }
+        }
+
+        // Plain items are registered items, interned by every scan whether recipes use them or not
+        int stale = 0;
+        for (int node = live.nextClearBit(0); node < values.length; node = live.nextClearBit(node + 1)) {
+            if (node >= itemNodeCount || !itemKeys.get(node).isPlain()) {
+                stale++;
+            }
+        }
+        return stale;
+    }
+
+    /**
+     * Item nodes whose value is derived rather than fixed and differs from an earlier state of this graph
+     * Includes nodes that had no value before, such as a chain an override made valuable.
+     */
+    int[] findDerivedChanges(RecipeGraphState earlier) {
+        int[] changed = new int[itemNodeCount];
+        int size = 0;
+        for (int node = 0; node < itemNodeCount; node++) {
+            double before = node < earlier.values.length ? earlier.values[node] : 0.0;
+            if (fixedValues[node] <= 0.0 && values[node] > 0.0 && values[node] != before) {
+                changed[size++] = node;
+            }
+        }
+        return Arrays.copyOf(changed, size);
+    }
+
+    /**
+     * Change one node's fixed value and re-solve everything downstream of it, without reading recipes
+     * @param node Node to change
+     * @param value New fixed value (0 makes the node recipe-derived again)
+     * @return New state; this state is left unchanged
+     */
+    RecipeGraphState withFixedValue(int node, double value) {
+        EMCSolver solver = new EMCSolver(values.length, RecipeEMCCalculator.MIN_EMC_VALUE);
+
+        double[] newFixedValues = Arrays.copyOf(fixedValues, values.length);
+        newFixedValues[node] = value;
+        for (int id = 0; id < newFixedValues.length; id++) {
+            if (newFixedValues[id] > 0) {
+                solver.setFixedValue(id, newFixedValues[id]);
+            }
+        }
+
+        List<RecipeEMCCalculator.GraphRecipe> order = new ArrayList<>(recipes.values());
+        Map<ResourceLocation, Integer> indexById = new HashMap<>(order.size() * 2);
+        for (RecipeEMCCalculator.GraphRecipe recipe : order) {
+            indexById.put(recipe.id(), solver.addRecipe(recipe.output(), recipe.outputCount(),
+                recipe.multiplier(), recipe.inputs(), recipe.inputCounts()));
+        }
+        for (int[] members : tags.values()) {
+            solver.addTag(members);
+        }
+
+        int[] previousBest = new int[values.length];
+        for (int id = 0; id < values.length; id++) {
+            previousBest[id] = bestRecipes[id] == null ? -1 : indexById.get(bestRecipes[id]);
+        }
+
+        solver.solveIncremental(values, previousBest, inferred, new int[] {node});
+
+        double[] newValues = new double[values.length];
+        ResourceLocation[] newBest = new ResourceLocation[values.length];
+        BitSet newInferred = new BitSet();
+        for (int id = 0; id < values.length; id++) {
+            newValues[id] = solver.getValue(id);
+            int best = solver.getBestRecipe(id);
+            newBest[id] = best >= 0 ? order.get(best).id() : null;
+            if (solver.isInferred(id)) {
+                newInferred.set(id);
+            }
+        }
+
+        return new RecipeGraphState(itemKeys, ingredientGroups, itemNodeCount, recipes, tags,
+            newFixedValues, newValues, newBest, newInferred);
+    }
+}
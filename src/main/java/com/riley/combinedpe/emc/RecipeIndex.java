@@ -0,0 +1,236 @@
+package com.riley.combinedpe.emc;
+
+import com.riley.combinedpe.CombinedPE;
+import net.minecraft.core.RegistryAccess;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.crafting.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Every registered recipe, normalized for the recipe graph
+ *
+ * Built once per load in a single pass over every registered recipe, whatever its type, and
+ * shared by the pack fingerprint and the scan, so every recipe is extracted once.
+ * Each recipe goes through the {@link RecipeExtractor} of its type (see {@link RecipeExtractors}),
+ * ranges of recipes in parallel when parallel_scan is enabled.
+ *
+ * Each entry keeps the normalized inputs, result and multiplier, so extraction and
+ * multiplier lookups happen once while the index is built.
+ */
+public class RecipeIndex {
+
+    /**
+     * A recipe that produces an indexed item
+     * @param id Recipe ID
+     * @param type ID of the recipe type the recipe was registered under
+     * @param inputs Consumed ingredients
+     * @param result Resolved result stack
+     * @param outputCount Resolved result count
+     * @param multiplier Multiplier of the recipe type
+     */
+    public record IndexedRecipe(
+        ResourceLocation id,
+        ResourceLocation type,
+        List<ExtractedRecipe.Input> inputs,
+        ItemStack result,
+        int outputCount,
+        double multiplier
+    ) {}
+
+    private final List<IndexedRecipe> allRecipes;
+
+    /**
+     * Names extraction workers and gives them the mod class loader
+     * (the default factory uses the system class loader, which cannot see mod classes)
+     */
+    private static final ForkJoinPool.ForkJoinWorkerThreadFactory THREAD_FACTORY = forkJoinPool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+        thread.setName("CombinedPE-Index-" + thread.getPoolIndex());
+        thread.setContextClassLoader(RecipeIndex.class.getClassLoader());
+        return thread;
+    };
+
+    // Extraction workers, kept between loads (null until the first parallel build)
+    private static ForkJoinPool pool;
+
+    private RecipeIndex(List<IndexedRecipe> allRecipes) {
+        this.allRecipes = allRecipes;
+    }
+
+    /**
+     * Build the index from every registered recipe
+     * Recipes and registries are immutable between reloads, so this may run on the scan thread.
+     * With several threads, ranges of the recipe list are extracted on a shared fork-join pool
+     * and joined back in list order, so the index is identical to a single-threaded build.
+     * @param recipes Recipes captured from the recipe manager
+     * @param registryAccess Registry access used to resolve recipe results
+     * @param extractors Extractors loaded on the server thread
+     * @param events Receives recipes that failed to read
+     * @param threads Worker threads to extract on (1 extracts on the calling thread)
+     * @return Recipe index for this load
+     */
+    public static RecipeIndex build(List<RecipeHolder<?>> recipes, RegistryAccess registryAccess,
+                                    RecipeExtractors extractors, ScanEvents events, int threads) {
+        Extraction extraction = new Extraction(recipes, registryAccess, extractors, events);
+        Extracted extracted = threads > 1
+            ? getPool(threads).invoke(new ExtractTask(extraction, 0, recipes.size()))
+            : extraction.extract(0, recipes.size());
+
+        CombinedPE.LOGGER.info("Indexed {} recipes of {} recipe types on {} threads ({} of ignored types, {} without a result)",
+            extracted.recipes.size(), extracted.types.size(), Math.max(threads, 1), extracted.ignored,
+            extracted.withoutResult);
+        return new RecipeIndex(Collections.unmodifiableList(extracted.recipes));
+    }
+
+    /**
+     * Get the extraction pool, creating it on first use or when the thread count changed
+     */
+    private static synchronized ForkJoinPool getPool(int threads) {
+        if (pool == null || pool.getParallelism() != threads) {
+            if (pool != null) {
+                pool.shutdown();
+            }
+            pool = new ForkJoinPool(threads, THREAD_FACTORY, null, false);
+        }
+        return pool;
+    }
+
+    /**
+     * Inputs of one index build, shared by its extraction workers
+     */
+    private static final class Extraction {
+
+        private final List<RecipeHolder<?>> recipes;
+        private final RegistryAccess registryAccess;
+        private final RecipeExtractors extractors;
+        private final ScanEvents events;
+
+        // Recipe types resolved once per type, not per recipe
+        private final Map<RecipeType<?>, ResourceLocation> typeIds = new ConcurrentHashMap<>();
+        private final Map<ResourceLocation, Double> multipliers = new ConcurrentHashMap<>();
+
+        Extraction(List<RecipeHolder<?>> recipes, RegistryAccess registryAccess, RecipeExtractors extractors,
+                   ScanEvents events) {
+            this.recipes = recipes;
+            this.registryAccess = registryAccess;
+            this.extractors = extractors;
+            this.events = events;
+        }
+
+        /**
+         * Extract a range of the recipe list, keeping list order
+         */
+        Extracted extract(int from, int to) {
+            Extracted extracted = new Extracted();
+            for (int index = from; index < to; index++) {
+                RecipeHolder<?> recipeHolder = recipes.get(index);
+                try {
+                    Recipe<?> recipe = recipeHolder.value();
+                    ResourceLocation typeId = typeIds.computeIfAbsent(recipe.getType(), BuiltInRegistries.RECIPE_TYPE::getKey);
+                    RecipeExtractor extractor = typeId == null ? null : extractors.get(typeId);
+                    if (extractor == null) {
+                        extracted.ignored++;
+                        continue;
+                    }
+
+                    ExtractedRecipe result = extractor.extract(recipe, registryAccess);
+                    if (result == null || result.result() == null || result.result().isEmpty()) {
+                        extracted.withoutResult++;
+                        continue;
+                    }
+
+                    // Keep registration order, so the graph lists recipes in recipe manager order
+                    extracted.recipes.add(new IndexedRecipe(
+                        recipeHolder.id(),
+                        typeId,
+                        result.inputs(),
+                        result.result(),
+                        result.outputCount(),
+                        multipliers.computeIfAbsent(typeId, type -> extractors.getMultiplier(type, extractor))
+                    ));
+                    extracted.types.add(typeId);
+                } catch (Exception e) {
+                    // Skip recipes that cause exceptions (e.g., incompatible modded recipes)
+                    events.record(ScanEvents.Kind.RECIPE_READ_FAILED, recipeHolder.id() + ": " + e.getMessage());
+                }
+            }
+            return extracted;
+        }
+    }
+
+    /**
+     * Recipes extracted from a range of the recipe list, with the counts of skipped ones
+     */
+    private static final class Extracted {
+
+        final List<IndexedRecipe> recipes = new ArrayList<>();
+        final Set<ResourceLocation> types = new HashSet<>();
+        int ignored;
+        int withoutResult;
+
+        /**
+         * Append the recipes of the range directly after this one
+         */
+        void append(Extracted other) {
+            recipes.addAll(other.recipes);
+            types.addAll(other.types);
+            ignored += other.ignored;
+            withoutResult += other.withoutResult;
+        }
+    }
+
+    /**
+     * Fork-join task extracting a range of the recipe list
+     */
+    private static final class ExtractTask extends RecursiveTask<Extracted> {
+
+        // Ranges at or below this size are extracted directly
+        private static final int SPLIT_THRESHOLD = 256;
+
+        private final Extraction extraction;
+        private final int from;
+        private final int to;
+
+        ExtractTask(Extraction extraction, int from, int to) {
+            this.extraction = extraction;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Extracted compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                return extraction.extract(from, to);
+            }
+
+            int middle = (from + to) >>> 1;
+            ExtractTask right = new ExtractTask(extraction, middle, to);
+            right.fork();
+
+            Extracted extracted = new ExtractTask(extraction, from, middle).compute();
+            extracted.append(right.join());
+            return extracted;
+        }
+    }
+
+    /**
+     * Get every indexed recipe, in recipe manager order
+     */
+    public List<IndexedRecipe> getAllRecipes() {
+        return allRecipes;
+    }
+
+    /**
+     * Get total number of indexed recipes
+     */
+    public int getRecipeCount() {
+        return allRecipes.size();
+    }
+}
@@ -0,0 +1,137 @@
+package com.riley.combinedpe.emc;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.riley.combinedpe.CombinedPE;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * EMC overrides set in-game with /combinedpe setemc
+ *
+ * Stored in config/combinedpe/runtime_overrides.json as a map of item ID to EMC value.
+ * Runtime overrides are exact item IDs and win over the config override rules.
+ * Every change is written straight to disk (temp file + atomic move), so a crash
+ * never loses or tears the file. Server thread only.
+ */
+public final class RuntimeOverrides {
+
+    private static final Path OVERRIDES_FILE = Paths.get("config", "combinedpe", "runtime_overrides.json");
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    // Sorted so the file and the fingerprint are stable (null until first use)
+    private static Map<String, Long> overrides;
+
+    private RuntimeOverrides() {}
+
+    /**
+     * Get all runtime overrides (item ID to EMC value)
+     */
+    public static Map<String, Long> getAll() {
+        return Collections.unmodifiableMap(loaded());
+    }
+
+    /**
+     * Set an item's override and save
+     * @return true if saved
+     */
+    public static boolean set(String itemId, long value) {
+        Long previous = loaded().put(itemId, value);
+        if (save()) {
+            return true;
+        }
+
+        // Keep memory and disk in sync
+        if (previous == null) {
+            overrides.remove(itemId);
+        } else {
+            overrides.put(itemId, previous);
+        }
+        return false;
+    }
+
+    /**
+     * Remove an item's override and save
+     * @return true if there was an override and it was removed
+     */
+    public static boolean remove(String itemId) {
+        Long previous = loaded().remove(itemId);
+        if (previous == null) {
+            return false;
+        }
+        if (save()) {
+            return true;
+        }
+
+        overrides.put(itemId, previous);
+        return false;
+    }
+
+    private static Map<String, Long> loaded() {
+        if (overrides == null) {
+            overrides = load();
+        }
+        return overrides;
+    }
+
+    private static Map<String, Long> load() {
+        Map<String, Long> values = new TreeMap<>();
+        if (!Files.exists(OVERRIDES_FILE)) {
+            return values;
+        }
+
+        try (Reader reader = Files.newBufferedReader(OVERRIDES_FILE)) {
+            JsonObject json = JsonParser.parseReader(reader).getAsJsonObject();
+            for (Map.Entry<String, JsonElement> entry : json.entrySet()) {
+                try {
+                    long value = entry.getValue().getAsLong();
+                    if (value > 0) {
+                        values.put(entry.getKey(), value);
+                        continue;
+                    }
+                } catch (Exception ignored) {
+                    // Reported below
+                }
+                CombinedPE.LOGGER.warn("Ignoring invalid runtime EMC override {}={}", entry.getKey(), entry.getValue());
+            }
+
+            CombinedPE.LOGGER.info("Loaded {} runtime EMC overrides", values.size());
+        } catch (Exception e) {
+            CombinedPE.LOGGER.error("Failed to load runtime EMC overrides from {}", OVERRIDES_FILE, e);
+        }
+        return values;
+    }
+
+    private static boolean save() {
+        try {
+            Files.createDirectories(OVERRIDES_FILE.getParent());
+
+            JsonObject json = new JsonObject();
+            for (Map.Entry<String, Long> entry : overrides.entrySet()) {
+                json.addProperty(entry.getKey(), entry.getValue());
+            }
+
+            Path tempFile = OVERRIDES_FILE.resolveSibling(OVERRIDES_FILE.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(tempFile)) {
+                GSON.toJson(json, writer);
+            }
+            Files.move(tempFile, OVERRIDES_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+
+        } catch (Exception e) {
+            CombinedPE.LOGGER.error("Failed to save runtime EMC overrides to {}", OVERRIDES_FILE, e);
+            return false;
+        }
+    }
+}
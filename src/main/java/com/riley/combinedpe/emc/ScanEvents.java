@@ -0,0 +1,130 @@
+package com.riley.combinedpe.emc;
+
+import com.riley.combinedpe.CombinedPE;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Event sink of one EMC scan
+ *
+ * Scans touch every recipe and item, so logging each one is tens of thousands of synchronous
+ * log writes on a big pack. Instead, events are counted by {@link Kind}, the last
+ * {@link #RECENT_EVENTS} notable ones are kept in a ring buffer, and everything is logged
+ * as one summary when the scan completes.
+ *
+ * Per-item detail goes to the report, or to the {@link #DETAIL} logger category
+ * ("combinedpe.scan") when its debug level is enabled.
+ */
+public class ScanEvents {
+
+    /**
+     * Opt-in per-item and per-recipe detail (enable DEBUG for "combinedpe.scan" in the log config)
+     */
+    public static final Logger DETAIL = LoggerFactory.getLogger(CombinedPE.MOD_ID + ".scan");
+
+    // Number of notable events kept for the summary
+    static final int RECENT_EVENTS = 16;
+
+    /**
+     * Counted event kinds
+     */
+    public enum Kind {
+        RECIPE_READ_FAILED("recipes failed to read", true),
+        RECIPE_RESOLVE_FAILED("recipes failed to resolve", true),
+        RECIPE_WITHOUT_INGREDIENTS("recipes without ingredients", false),
+        CYCLE_CAPPED("items capped in recipe cycles", true);
+
+        private final String description;
+        private final boolean notable;
+
+        Kind(String description, boolean notable) {
+            this.description = description;
+            this.notable = notable;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        /**
+         * Notable kinds make the summary a warning, and their recorded messages are kept in the ring buffer
+         */
+        public boolean isNotable() {
+            return notable;
+        }
+    }
+
+    private final LongAdder[] counts = new LongAdder[Kind.values().length];
+
+    // Ring buffer of notable event messages; next is the total number recorded
+    private final String[] recent = new String[RECENT_EVENTS];
+    private long next;
+
+    public ScanEvents() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Count events without a message (thread-safe)
+     */
+    public void count(Kind kind, long amount) {
+        counts[kind.ordinal()].add(amount);
+    }
+
+    /**
+     * Record one event (thread-safe)
+     * @param message Shown in the summary if the kind is notable, otherwise only in the detail log
+     */
+    public void record(Kind kind, String message) {
+        counts[kind.ordinal()].increment();
+        DETAIL.debug("{}: {}", kind, message);
+
+        if (kind.isNotable()) {
+            synchronized (recent) {
+                recent[(int) (next++ % RECENT_EVENTS)] = message;
+            }
+        }
+    }
+
+    public long getCount(Kind kind) {
+        return counts[kind.ordinal()].sum();
+    }
+
+    /**
+     * Log all counts and the recent notable events as one message
+     */
+    public void logSummary() {
+        StringBuilder summary = new StringBuilder();
+        boolean notable = false;
+        for (Kind kind : Kind.values()) {
+            long count = getCount(kind);
+            if (count > 0) {
+                summary.append(summary.isEmpty() ? "" : ", ").append(count).append(' ').append(kind.getDescription());
+                notable |= kind.isNotable();
+            }
+        }
+        if (summary.isEmpty()) {
+            return;
+        }
+
+        synchronized (recent) {
+            int kept = (int) Math.min(next, RECENT_EVENTS);
+            if (kept > 0) {
+                summary.append("\nLast ").append(kept).append(" of ").append(next).append(" notable events:");
+                for (long i = next - kept; i < next; i++) {
+                    summary.append("\n  ").append(recent[(int) (i % RECENT_EVENTS)]);
+                }
+            }
+        }
+
+        if (notable) {
+            CombinedPE.LOGGER.warn("EMC scan events: {}", summary);
+        } else {
+            CombinedPE.LOGGER.info("EMC scan events: {}", summary);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.riley.combinedpe.emc;
+
+import com.riley.combinedpe.CombinedPE;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Nanosecond timings of one EMC load or scan
+ *
+ * Records time per {@link Phase}, time per mod namespace and the most expensive items to
+ * resolve. A load moves between the server thread and the scan thread, so every record is
+ * thread-safe.
+ *
+ * The profile of the last load or scan is shown by /combinedpe scanstats and written next
+ * to the report.
+ */
+public class ScanProfiler {
+
+    /**
+     * Profiled phases, in the order they run
+     */
+    public enum Phase {
+        FINGERPRINT("Pack fingerprint"),
+        CACHE_LOAD("Cache load"),
+        PROJECTE_TABLE("ProjectE value table"),
+        RECIPE_INDEX("Recipe index build"),
+        SNAPSHOT("Snapshot (tags, rules)"),
+        GRAPH_BUILD("Recipe graph build"),
+        SOLVE("Recipe evaluation (solve)"),
+        TAG_INFERENCE("Tag inference (within solve)"),
+        ITEM_SCAN("Item scan"),
+        CACHE_SAVE("Cache save"),
+        REPORT("Report"),
+        MAPPER_REGISTRATION("ProjectE mapper registration");
+
+        private final String description;
+
+        Phase(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    /**
+     * Time spent on one mod's items
+     */
+    public record NamespaceStats(String namespace, long nanos, long items) {}
+
+    /**
+     * Time spent resolving one item
+     */
+    public record ItemTiming(String itemId, long nanos) {}
+
+    // Number of most expensive items kept
+    static final int TOP_ITEMS = 20;
+
+    private static volatile ScanProfiler last;
+
+    private final long startTime = System.currentTimeMillis();
+    private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+    private final Map<String, LongAdder[]> namespaces = new ConcurrentHashMap<>();
+
+    // Min-heap of the most expensive items; threshold lets cheap items skip the lock
+    private final PriorityQueue<ItemTiming> topItems = new PriorityQueue<>(Comparator.comparingLong(ItemTiming::nanos));
+    private volatile long topThreshold;
+
+    public ScanProfiler() {
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Get the profile of the last load or scan (null before the first one)
+     */
+    public static ScanProfiler getLast() {
+        return last;
+    }
+
+    /**
+     * Make this the profile shown by /combinedpe scanstats
+     */
+    public void publish() {
+        last = this;
+    }
+
+    /**
+     * Add time to a phase (thread-safe)
+     */
+    public void addPhase(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()].add(nanos);
+    }
+
+    /**
+     * Replace a phase's time (for phases that rerun, like mapper registration on every reload)
+     */
+    public void setPhase(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()].reset();
+        phaseNanos[phase.ordinal()].add(nanos);
+    }
+
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()].sum();
+    }
+
+    /**
+     * Record the time spent resolving one item (thread-safe)
+     */
+    public void recordItem(String itemId, long nanos) {
+        int separator = itemId.indexOf(':');
+        String namespace = separator > 0 ? itemId.substring(0, separator) : "minecraft";
+        LongAdder[] stats = namespaces.computeIfAbsent(namespace, k -> new LongAdder[] {new LongAdder(), new LongAdder()});
+        stats[0].add(nanos);
+        stats[1].increment();
+
+        if (nanos > topThreshold) {
+            synchronized (topItems) {
+                topItems.add(new ItemTiming(itemId, nanos));
+                if (topItems.size() > TOP_ITEMS) {
+                    topItems.poll();
+                }
+                if (topItems.size() == TOP_ITEMS) {
+                    topThreshold = topItems.peek().nanos();
+                }
+            }
+        }
+    }
+
+    /**
+     * Namespaces by total time, most expensive first
+     */
+    public List<NamespaceStats> getNamespaces() {
+        List<NamespaceStats> stats = new ArrayList<>(namespaces.size());
+        namespaces.forEach((namespace, adders) ->
+            stats.add(new NamespaceStats(namespace, adders[0].sum(), adders[1].sum())));
+        stats.sort(Comparator.comparingLong(NamespaceStats::nanos).reversed());
+        return stats;
+    }
+
+    /**
+     * Most expensive items, most expensive first
+     */
+    public List<ItemTiming> getTopItems() {
+        List<ItemTiming> items;
+        synchronized (topItems) {
+            items = new ArrayList<>(topItems);
+        }
+        items.sort(Comparator.comparingLong(ItemTiming::nanos).reversed());
+        return items;
+    }
+
+    /**
+     * Summed time of all phases (tag inference is counted within the solve)
+     */
+    public long getTotalNanos() {
+        long total = 0;
+        for (Phase phase : Phase.values()) {
+            if (phase != Phase.TAG_INFERENCE) {
+                total += getPhaseNanos(phase);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Format the profile as text lines
+     * @param limit Maximum number of namespaces and items listed
+     */
+    public List<String> describe(int limit) {
+        List<String> lines = new ArrayList<>();
+        lines.add("Phases:");
+        for (Phase phase : Phase.values()) {
+            long nanos = getPhaseNanos(phase);
+            if (nanos > 0) {
+                lines.add("  " + phase.getDescription() + ": " + formatNanos(nanos));
+            }
+        }
+        lines.add("  Total: " + formatNanos(getTotalNanos()));
+
+        List<NamespaceStats> namespaceStats = getNamespaces();
+        if (!namespaceStats.isEmpty()) {
+            lines.add("Slowest mods:");
+            for (NamespaceStats stats : namespaceStats.subList(0, Math.min(limit, namespaceStats.size()))) {
+                lines.add("  " + stats.namespace() + ": " + formatNanos(stats.nanos()) + " for " + stats.items()
+                    + " items (" + formatNanos(stats.nanos() / Math.max(stats.items(), 1)) + " per item)");
+            }
+        }
+
+        List<ItemTiming> items = getTopItems();
+        if (!items.isEmpty()) {
+            lines.add("Slowest items:");
+            for (ItemTiming item : items.subList(0, Math.min(limit, items.size()))) {
+                lines.add("  " + item.itemId() + ": " + formatNanos(item.nanos()));
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Write the full profile to a file
+     */
+    public void writeTo(Path file) {
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            writer.append("CombinedPE EMC Scan Profile\n");
+            writer.append("Started: ").append(String.valueOf(new Date(startTime))).append('\n');
+            for (String line : describe(Integer.MAX_VALUE)) {
+                writer.append(line).append('\n');
+            }
+        } catch (IOException e) {
+            CombinedPE.LOGGER.error("Failed to write EMC scan profile", e);
+        }
+    }
+
+    /**
+     * Format a duration, picking the unit by size
+     */
+    static String formatNanos(long nanos) {
+        if (nanos >= 1_000_000_000L) {
+            return String.format(Locale.ROOT, "%.2fs", nanos / 1e9);
+        }
+        if (nanos >= 1_000_000L) {
+            return String.format(Locale.ROOT, "%.1fms", nanos / 1e6);
+        }
+        return String.format(Locale.ROOT, "%.1fus", nanos / 1e3);
+    }
+}
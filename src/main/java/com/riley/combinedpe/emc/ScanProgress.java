@@ -0,0 +1,139 @@
+package com.riley.combinedpe.emc;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Progress of a background EMC scan
+ *
+ * Written by the scan thread, read by the server thread
+ * to report progress and an ETA to the console and operators.
+ */
+public class ScanProgress {
+
+    /**
+     * Scan phases, in order
+     */
+    public enum Phase {
+        SOLVING("Solving recipe graph"),
+        SCANNING("Scanning items"),
+        DONE("Done");
+
+        private final String description;
+
+        Phase(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private final int totalItems;
+    private final long startTime;
+    private final LongAdder scannedItems = new LongAdder();
+    private final ScanProfiler profiler;
+
+    private volatile Phase phase = Phase.SOLVING;
+    private volatile long phaseStartTime;
+
+    public ScanProgress(int totalItems, ScanProfiler profiler) {
+        this.totalItems = totalItems;
+        this.profiler = profiler;
+        this.startTime = System.currentTimeMillis();
+        this.phaseStartTime = startTime;
+    }
+
+    /**
+     * Move to the next phase
+     */
+    public void setPhase(Phase phase) {
+        this.phaseStartTime = System.currentTimeMillis();
+        this.phase = phase;
+    }
+
+    /**
+     * Record one scanned item (safe to call from the scan thread)
+     */
+    public void itemScanned() {
+        scannedItems.increment();
+    }
+
+    /**
+     * Get the profiler of this scan (safe to record into from the scan thread)
+     */
+    public ScanProfiler getProfiler() {
+        return profiler;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public int getTotalItems() {
+        return totalItems;
+    }
+
+    public long getScannedItems() {
+        return scannedItems.sum();
+    }
+
+    /**
+     * Time since the scan started
+     */
+    public long getElapsedMs() {
+        return System.currentTimeMillis() - startTime;
+    }
+
+    /**
+     * Estimated time until the item scan finishes, from the scan rate so far
+     * @return ETA in milliseconds, or -1 if it cannot be estimated yet
+     */
+    public long getEtaMs() {
+        if (phase != Phase.SCANNING) {
+            return -1;
+        }
+
+        long scanned = getScannedItems();
+        if (scanned == 0) {
+            return -1;
+        }
+
+        long phaseElapsed = System.currentTimeMillis() - phaseStartTime;
+        return phaseElapsed * (totalItems - scanned) / scanned;
+    }
+
+    /**
+     * One-line progress description for logs and chat
+     */
+    public String describe() {
+        Phase current = phase;
+        StringBuilder message = new StringBuilder(current.getDescription());
+
+        if (current == Phase.SCANNING) {
+            long scanned = getScannedItems();
+            int percent = totalItems == 0 ? 100 : (int) (scanned * 100 / totalItems);
+            message.append(": ").append(scanned).append('/').append(totalItems)
+                .append(" (").append(percent).append("%)");
+
+            long eta = getEtaMs();
+            if (eta >= 0) {
+                message.append(", ETA ").append(formatDuration(eta));
+            }
+        }
+
+        message.append(" - ").append(formatDuration(getElapsedMs())).append(" elapsed");
+        return message.toString();
+    }
+
+    /**
+     * Format a duration as seconds (or minutes and seconds)
+     */
+    static String formatDuration(long ms) {
+        long seconds = (ms + 999) / 1000;
+        if (seconds < 60) {
+            return seconds + "s";
+        }
+        return (seconds / 60) + "m " + (seconds % 60) + "s";
+    }
+}
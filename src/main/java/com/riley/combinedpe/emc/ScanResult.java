@@ -0,0 +1,96 @@
+package com.riley.combinedpe.emc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Results and statistics of a scan
+ *
+ * Filled by the thread scanning the items (thread-confined).
+ * Values are kept in primitive arrays indexed by snapshot item index.
+ */
+public class ScanResult {
+
+    public int totalItems;
+    public int itemsWithEMC;
+    public int blacklistedItems;
+    public int newEMCAssignments;
+    public int overriddenEMC;
+    public int recipeBasedEMC;
+    public int tagBasedEMC;
+
+    // Item values that differ from first-match ingredient mode (-1 if not compared)
+    public int firstMatchChanges = -1;
+
+    public final List<String> blacklistedItemIds = new ArrayList<>();
+
+    // Marks snapshot items without a discovered value
+    private static final byte NO_VALUE = -1;
+
+    // Discovered value and source ID per snapshot item index
+    private final double[] discoveredValues;
+    private final byte[] discoveredSources;
+
+    // Discovered values as a store snapshot (built once the scan is complete)
+    private EMCStore.Snapshot values;
+
+    // Solved recipe graph for the next scan to diff against (null if not captured)
+    private RecipeGraphState graphState;
+
+    // How each value was derived (built once the scan is complete)
+    private EMCProvenance provenance;
+
+    /**
+     * @param itemCount Number of items in the scan's snapshot
+     */
+    public ScanResult(int itemCount) {
+        this.discoveredValues = new double[itemCount];
+        this.discoveredSources = new byte[itemCount];
+        Arrays.fill(discoveredSources, NO_VALUE);
+    }
+
+    /**
+     * Record the value discovered for a snapshot item
+     */
+    public void putValue(int index, double value, EMCSource source) {
+        discoveredValues[index] = value;
+        discoveredSources[index] = source.getId();
+    }
+
+    /**
+     * Convert the discovered values into a store snapshot (call once, after the scan)
+     */
+    public void buildValues(ScanSnapshot snapshot) {
+        EMCStore.Builder builder = new EMCStore.Builder();
+        for (int index = 0; index < discoveredSources.length; index++) {
+            if (discoveredSources[index] != NO_VALUE) {
+                builder.put(snapshot.getItem(index), discoveredValues[index], EMCSource.byId(discoveredSources[index]));
+            }
+        }
+        values = builder.build();
+    }
+
+    /**
+     * Get the discovered values as a store snapshot (after {@link #buildValues()})
+     */
+    public EMCStore.Snapshot getValues() {
+        return values;
+    }
+
+    public RecipeGraphState getGraphState() {
+        return graphState;
+    }
+
+    public void setGraphState(RecipeGraphState graphState) {
+        this.graphState = graphState;
+    }
+
+    public EMCProvenance getProvenance() {
+        return provenance;
+    }
+
+    public void setProvenance(EMCProvenance provenance) {
+        this.provenance = provenance;
+    }
+}
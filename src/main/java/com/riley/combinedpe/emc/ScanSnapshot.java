@@ -0,0 +1,180 @@
+package com.riley.combinedpe.emc;
+
+import com.riley.combinedpe.Config;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.Item;
+
+import java.util.*;
+
+/**
+ * Immutable inputs of one EMC scan
+ *
+ * Captured on the server thread before the scan starts:
+ * - Registered items and their IDs (in registry order)
+ * - Item tag index (memberships and per-tag EMC aggregates)
+ * - Config override and blacklist rules, resolved per item, plus runtime overrides
+ * - Hash of the config the fingerprint covers
+ * - Recipes, in the calculator (indexed, fingerprinted and built into a graph by the scan thread)
+ *
+ * ProjectE's values are captured into the calculator on the server thread once the recipes are
+ * resolved (see {@link RecipeEMCCalculator#captureProjectEValues}).
+ *
+ * Once captured, the snapshot is only read, so it can be shared by scan workers
+ * on other threads without touching live registries, config or the ProjectE proxy.
+ */
+public class ScanSnapshot {
+
+    private final List<Item> items;
+    private final String[] itemIds;
+    private final TagIndex tagIndex;
+    private final EMCRules rules;
+    private final Map<String, Long> runtimeOverrides;
+    private final long[] overrideValues;
+    private final long[] blacklistMatches;
+    private final long configHash;
+    private final RecipeEMCCalculator calculator;
+
+    private ScanSnapshot(List<Item> items, String[] itemIds, TagIndex tagIndex, EMCRules rules,
+                         Map<String, Long> runtimeOverrides, long[] overrideValues, long[] blacklistMatches,
+                         long configHash, RecipeEMCCalculator calculator) {
+        this.items = items;
+        this.itemIds = itemIds;
+        this.tagIndex = tagIndex;
+        this.rules = rules;
+        this.runtimeOverrides = runtimeOverrides;
+        this.overrideValues = overrideValues;
+        this.blacklistMatches = blacklistMatches;
+        this.configHash = configHash;
+        this.calculator = calculator;
+    }
+
+    /**
+     * Capture the scan inputs (must run on the server thread)
+     * @param calculator Recipe calculator for this scan, holding the captured recipes
+     */
+    public static ScanSnapshot capture(RecipeEMCCalculator calculator) {
+        // Snapshot index == registry ID, so per-item arrays can be shared with registry-indexed tables
+        List<Item> items = new ArrayList<>(BuiltInRegistries.ITEM.size());
+        for (int id = 0; id < BuiltInRegistries.ITEM.size(); id++) {
+            items.add(BuiltInRegistries.ITEM.byId(id));
+        }
+
+        String[] itemIds = new String[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            itemIds[i] = BuiltInRegistries.ITEM.getKey(items.get(i)).toString();
+        }
+
+        // One pass over the tag registry
+        TagIndex tagIndex = TagIndex.build();
+
+        // Resolve override and blacklist rules (including tag rules) for every item up front
+        EMCRules rules = Config.getRules();
+        long[] overrideValues = rules.getOverrides().resolve(itemIds, tagIndex);
+        long[] blacklistMatches = rules.getBlacklist().resolve(itemIds, tagIndex);
+
+        // Runtime overrides (/combinedpe setemc) win over config rules
+        Map<String, Long> runtimeOverrides = RuntimeOverrides.getAll();
+        for (Map.Entry<String, Long> entry : runtimeOverrides.entrySet()) {
+            ResourceLocation location = ResourceLocation.tryParse(entry.getKey());
+            Optional<Item> item = location == null ? Optional.empty() : BuiltInRegistries.ITEM.getOptional(location);
+            if (item.isPresent()) {
+                overrideValues[BuiltInRegistries.ITEM.getId(item.get())] = entry.getValue();
+            }
+        }
+
+        // Overrides are fixed values in the graph, so recipes using an overridden item follow it,
+        // and tags join the graph so tag inference runs in the same solve
+        // The graph itself is built by the caller, in one go or a slice per tick
+        calculator.setScanInputs(overrideValues, tagIndex);
+
+        return new ScanSnapshot(
+            List.copyOf(items),
+            itemIds,
+            tagIndex,
+            rules,
+            Map.copyOf(runtimeOverrides),
+            overrideValues,
+            blacklistMatches,
+            PackFingerprint.hashConfig(),
+            calculator
+        );
+    }
+
+    /**
+     * Number of items in the snapshot
+     */
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Get an item by its position (registry order)
+     */
+    public Item getItem(int index) {
+        return items.get(index);
+    }
+
+    /**
+     * Get the registry ID string of an item by its position
+     */
+    public String getItemId(int index) {
+        return itemIds[index];
+    }
+
+    /**
+     * Get ProjectE's EMC value for an item, as captured by the calculator
+     * @return EMC value, or 0 if the item had no value
+     */
+    public long getProjectEValue(Item item) {
+        return calculator.getProjectEValues().get(item);
+    }
+
+    /**
+     * Get the item tags captured for the scan
+     */
+    public TagIndex getTagIndex() {
+        return tagIndex;
+    }
+
+    /**
+     * Get the hash of the config captured for the scan (see {@link PackFingerprint#hashConfig()})
+     */
+    public long getConfigHash() {
+        return configHash;
+    }
+
+    /**
+     * Get the override rules (rule to EMC value): config rules in config order, then runtime overrides
+     */
+    public Map<String, Long> getEMCOverrides() {
+        if (runtimeOverrides.isEmpty()) {
+            return rules.getOverrides().getEntries();
+        }
+        Map<String, Long> overrides = new LinkedHashMap<>(rules.getOverrides().getEntries());
+        overrides.putAll(runtimeOverrides);
+        return overrides;
+    }
+
+    /**
+     * Get the override value for an item by its position
+     * @return EMC value, or {@link ItemRuleSet#NO_MATCH} if no override rule matches
+     */
+    public long getOverride(int index) {
+        return overrideValues[index];
+    }
+
+    /**
+     * Check if an item was blacklisted at capture time, by its position
+     */
+    public boolean isBlacklisted(int index) {
+        return blacklistMatches[index] != ItemRuleSet.NO_MATCH;
+    }
+
+    /**
+     * Get the recipe calculator (call {@link RecipeEMCCalculator#solve()} before reading values)
+     */
+    public RecipeEMCCalculator getCalculator() {
+        return calculator;
+    }
+}
@@ -0,0 +1,143 @@
+package com.riley.combinedpe.emc;
+
+import net.minecraft.core.Holder;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.tags.TagKey;
+import net.minecraft.world.item.Item;
+
+import java.util.*;
+
+/**
+ * Inverted index of item tag membership
+ *
+ * Built in a single pass over the item tag registry:
+ * - item -> tags it belongs to (indexed by item registry ID)
+ * - tag -> member items
+ *
+ * Looking up an item's tags, or a tag's members, is then an array access.
+ * Tag EMC averages are aggregated by the solver as values resolve (see {@link TagEMCInferrer}).
+ * The index is immutable once built and can be shared across threads and subsystems.
+ */
+public class TagIndex {
+
+    private static final int[] NO_TAGS = new int[0];
+
+    private final List<TagKey<Item>> tags;
+    private final Map<TagKey<Item>, Integer> tagIds;
+    private final int[][] itemTags;
+    private final int[][] tagMembers;
+
+    private TagIndex(List<TagKey<Item>> tags, Map<TagKey<Item>, Integer> tagIds, int[][] itemTags,
+                     int[][] tagMembers) {
+        this.tags = tags;
+        this.tagIds = tagIds;
+        this.itemTags = itemTags;
+        this.tagMembers = tagMembers;
+    }
+
+    /**
+     * Build the index from the current item tags (must run on the server thread)
+     */
+    public static TagIndex build() {
+        int itemCount = BuiltInRegistries.ITEM.size();
+
+        List<TagKey<Item>> tags = new ArrayList<>();
+        Map<TagKey<Item>, Integer> tagIds = new HashMap<>();
+        List<int[]> members = new ArrayList<>();
+
+        // Count memberships per item first, then fill the item -> tags arrays
+        int[] itemTagCounts = new int[itemCount];
+
+        BuiltInRegistries.ITEM.getTags().forEach(pair -> {
+            int tagId = tags.size();
+            tags.add(pair.getFirst());
+            tagIds.put(pair.getFirst(), tagId);
+
+            int[] tagItems = new int[pair.getSecond().size()];
+            int size = 0;
+
+            for (Holder<Item> holder : pair.getSecond()) {
+                int itemId = BuiltInRegistries.ITEM.getId(holder.value());
+                tagItems[size++] = itemId;
+                itemTagCounts[itemId]++;
+            }
+
+            members.add(Arrays.copyOf(tagItems, size));
+        });
+
+        int[][] itemTags = new int[itemCount][];
+        for (int itemId = 0; itemId < itemCount; itemId++) {
+            itemTags[itemId] = itemTagCounts[itemId] == 0 ? NO_TAGS : new int[itemTagCounts[itemId]];
+        }
+        int[] fill = new int[itemCount];
+        for (int tagId = 0; tagId < members.size(); tagId++) {
+            for (int itemId : members.get(tagId)) {
+                itemTags[itemId][fill[itemId]++] = tagId;
+            }
+        }
+
+        return new TagIndex(
+            List.copyOf(tags),
+            Map.copyOf(tagIds),
+            itemTags,
+            members.toArray(new int[0][])
+        );
+    }
+
+    /**
+     * Get the IDs of all tags an item belongs to
+     */
+    public int[] getTagIds(Item item) {
+        int itemId = BuiltInRegistries.ITEM.getId(item);
+        return itemId >= 0 && itemId < itemTags.length ? itemTags[itemId] : NO_TAGS;
+    }
+
+    /**
+     * Get all tags an item belongs to
+     */
+    public Set<TagKey<Item>> getTags(Item item) {
+        Set<TagKey<Item>> result = new HashSet<>();
+        for (int tagId : getTagIds(item)) {
+            result.add(tags.get(tagId));
+        }
+        return result;
+    }
+
+    /**
+     * Check if an item is a member of a tag
+     */
+    public boolean isInTag(Item item, TagKey<Item> tag) {
+        Integer tagId = tagIds.get(tag);
+        if (tagId == null) {
+            return false;
+        }
+        for (int id : getTagIds(item)) {
+            if (id == tagId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the ID of a tag, or -1 if the tag is unknown
+     */
+    public int getTagId(TagKey<Item> tag) {
+        return tagIds.getOrDefault(tag, -1);
+    }
+
+    public TagKey<Item> getTag(int tagId) {
+        return tags.get(tagId);
+    }
+
+    public int getTagCount() {
+        return tags.size();
+    }
+
+    /**
+     * Get the registry IDs of a tag's members
+     */
+    public int[] getMemberIds(int tagId) {
+        return tagMembers[tagId];
+    }
+}
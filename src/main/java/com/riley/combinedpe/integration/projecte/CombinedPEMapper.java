@@ -1,7 +1,9 @@
 package com.riley.combinedpe.integration.projecte;
 
 import com.riley.combinedpe.CombinedPE;
-import com.riley.combinedpe.emc.DynamicEMCMapper;
+import com.riley.combinedpe.emc.EMCSource;
+import com.riley.combinedpe.emc.EMCStore;
+import com.riley.combinedpe.emc.ScanProfiler;
 import moze_intel.projecte.api.mapper.IEMCMapper;
 import moze_intel.projecte.api.mapper.collector.IMappingCollector;
 import moze_intel.projecte.api.nss.NSSItem;
@@ -9,9 +11,6 @@ import moze_intel.projecte.api.nss.NormalizedSimpleStack;
 import net.minecraft.core.RegistryAccess;
 import net.minecraft.server.ReloadableServerResources;
 import net.minecraft.server.packs.resources.ResourceManager;
-import net.minecraft.world.item.Item;
-
-import java.util.Map;
 
 /**
  * ProjectE EMC mapper for CombinedPE
@@ -22,7 +21,7 @@ import java.util.Map;
  * Registration flow:
  * 1. ProjectE loads and calls addMappings() during resource reload
  * 2. We provide our calculated EMC values
- *    - Config overrides use setValueAfter() to override even hardcoded ProjectE values
+ *    - Config and runtime (setemc) overrides use setValueAfter() to override even hardcoded ProjectE values
  *    - Calculated values use setValueBefore() to fill gaps without overriding ProjectE
  * 3. ProjectE's graph algorithm incorporates our values
  * 4. Final EMC values become available in-game
@@ -35,8 +34,7 @@ public class CombinedPEMapper implements IEMCMapper<NormalizedSimpleStack, Long>
     @Override
     public boolean isAvailable() {
         // Only active if we have calculated EMC values
-        Map<Item, Long> emcValues = DynamicEMCMapper.getDiscoveredEMCAsLong();
-        return emcValues != null && !emcValues.isEmpty();
+        return !EMCStore.getSnapshot().isEmpty();
     }
 
     /**
@@ -49,51 +47,50 @@ public class CombinedPEMapper implements IEMCMapper<NormalizedSimpleStack, Long>
         RegistryAccess registryAccess,
         ResourceManager resourceManager
     ) {
-        Map<Item, Long> emcValues = DynamicEMCMapper.getDiscoveredEMCAsLong();
-        Map<Item, String> emcSources = DynamicEMCMapper.getEMCSources();
+        EMCStore.Snapshot snapshot = EMCStore.getSnapshot();
 
-        if (emcValues == null || emcValues.isEmpty()) {
+        if (snapshot.isEmpty()) {
             CombinedPE.LOGGER.warn("CombinedPEMapper called but no EMC values available");
             return;
         }
 
-        int overrideCount = 0;
-        int calculatedCount = 0;
+        long startTime = System.nanoTime();
+        int[] counts = new int[2]; // calculated, overrides
 
-        for (Map.Entry<Item, Long> entry : emcValues.entrySet()) {
-            Item item = entry.getKey();
-            Long emcValue = entry.getValue();
+        snapshot.forEach((item, value, source) -> {
+            long emcValue = Math.round(value);
 
             // Skip invalid values
-            if (emcValue == null || emcValue <= 0) {
-                continue;
+            if (emcValue <= 0) {
+                return;
             }
 
             try {
                 // Create NormalizedSimpleStack from item
                 NormalizedSimpleStack nss = NSSItem.createItem(item);
 
-                // Determine if this is a config override or calculated value
-                String source = emcSources.get(item);
-                boolean isOverride = "config_override".equals(source);
-
-                if (isOverride) {
+                if (source == EMCSource.CONFIG_OVERRIDE) {
                     // Config overrides use setValueAfter to override even hardcoded ProjectE values
                     collector.setValueAfter(nss, emcValue);
-                    overrideCount++;
+                    counts[1]++;
                 } else {
                     // Calculated values use setValueBefore to fill gaps without overriding ProjectE
                     collector.setValueBefore(nss, emcValue);
-                    calculatedCount++;
+                    counts[0]++;
                 }
 
             } catch (Exception e) {
                 CombinedPE.LOGGER.error("Failed to register EMC for item: {}", item, e);
             }
-        }
+        });
 
         CombinedPE.LOGGER.info("CombinedPEMapper registered {} calculated EMC values and {} overrides with ProjectE",
-            calculatedCount, overrideCount);
+            counts[0], counts[1]);
+
+        ScanProfiler profile = ScanProfiler.getLast();
+        if (profile != null) {
+            profile.setPhase(ScanProfiler.Phase.MAPPER_REGISTRATION, System.nanoTime() - startTime);
+        }
     }
 
     /**
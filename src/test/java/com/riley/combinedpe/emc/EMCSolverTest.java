@@ -0,0 +1,372 @@
+package com.riley.combinedpe.emc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for EMCSolver
+ *
+ * The solver works on plain integer node IDs, so these tests run
+ * without a Minecraft environment.
+ */
+class EMCSolverTest {
+
+    private static final double DELTA = 1e-9;
+
+    /**
+     * Test simple chain: log -> 4 planks -> 4 sticks (2 planks)
+     */
+    @Test
+    void testSimpleChain() {
+        EMCSolver solver = new EMCSolver(3, 1.0);
+        solver.setFixedValue(0, 32.0);                                   // log
+        solver.addRecipe(1, 4, 1.0, new int[]{0}, new int[]{1});         // planks
+        solver.addRecipe(2, 4, 1.0, new int[]{1, 1}, new int[]{1, 1});   // sticks
+        solver.solve();
+
+        assertEquals(32.0, solver.getValue(0), DELTA);
+        assertEquals(8.0, solver.getValue(1), DELTA);
+        assertEquals(4.0, solver.getValue(2), DELTA);
+        assertTrue(solver.isFixed(0));
+        assertEquals(-1, solver.getBestRecipe(0));
+    }
+
+    /**
+     * Test that the cheapest recipe wins regardless of insertion order
+     */
+    @Test
+    void testCheapestRecipeWins() {
+        EMCSolver solver = new EMCSolver(3, 1.0);
+        solver.setFixedValue(0, 100.0);
+        solver.setFixedValue(1, 10.0);
+        solver.addRecipe(2, 1, 1.0, new int[]{0}, new int[]{1});
+        int cheap = solver.addRecipe(2, 1, 1.0, new int[]{1}, new int[]{2});
+        solver.solve();
+
+        assertEquals(20.0, solver.getValue(2), DELTA);
+        assertEquals(cheap, solver.getBestRecipe(2));
+    }
+
+    /**
+     * Test that a recipe cycle does not poison items downstream of it
+     * ingot <-> 9 nuggets, block from 9 ingots
+     */
+    @Test
+    void testCycleDoesNotPoisonDownstream() {
+        EMCSolver solver = new EMCSolver(4, 1.0);
+        solver.setFixedValue(0, 9.0);                                    // ore
+        solver.addRecipe(1, 1, 1.0, new int[]{0}, new int[]{1});         // ingot from ore
+        solver.addRecipe(2, 9, 1.0, new int[]{1}, new int[]{1});         // nuggets from ingot
+        solver.addRecipe(1, 1, 1.0, new int[]{2}, new int[]{9});         // ingot from nuggets
+        solver.addRecipe(3, 1, 1.0, new int[]{1}, new int[]{9});         // block from ingots
+        solver.solve();
+
+        assertEquals(9.0, solver.getValue(1), DELTA);
+        assertEquals(1.0, solver.getValue(2), DELTA);
+        assertEquals(81.0, solver.getValue(3), DELTA);
+    }
+
+    /**
+     * Test that an unreachable cycle simply stays unresolved
+     */
+    @Test
+    void testUnreachableCycleStaysUnresolved() {
+        EMCSolver solver = new EMCSolver(2, 1.0);
+        solver.addRecipe(0, 1, 1.0, new int[]{1}, new int[]{1});
+        solver.addRecipe(1, 1, 1.0, new int[]{0}, new int[]{1});
+        solver.solve();
+
+        assertEquals(0.0, solver.getValue(0), DELTA);
+        assertEquals(0.0, solver.getValue(1), DELTA);
+    }
+
+    /**
+     * Test that a cycle with a net gain terminates
+     */
+    @Test
+    void testShrinkingCycleTerminates() {
+        EMCSolver solver = new EMCSolver(3, 1.0);
+        solver.setFixedValue(0, 1_000_000.0);
+        solver.addRecipe(1, 1, 1.0, new int[]{0}, new int[]{1});
+        solver.addRecipe(2, 1, 0.9, new int[]{1}, new int[]{1});
+        solver.addRecipe(1, 1, 0.9, new int[]{2}, new int[]{1});
+        solver.solve();
+
+        assertTrue(solver.getValue(1) >= 1.0);
+        assertTrue(solver.getValue(1) < 1_000_000.0);
+    }
+
+    /**
+     * Test that a recipe needs every ingredient before it yields a value
+     */
+    @Test
+    void testMissingIngredientBlocksRecipe() {
+        EMCSolver solver = new EMCSolver(3, 1.0);
+        solver.setFixedValue(0, 5.0);
+        solver.addRecipe(2, 1, 1.0, new int[]{0, 1}, new int[]{1, 1});
+        solver.solve();
+
+        assertEquals(0.0, solver.getValue(2), DELTA);
+    }
+
+    /**
+     * Test minimum EMC value and multiplier application
+     */
+    @Test
+    void testMinimumValueAndMultiplier() {
+        EMCSolver solver = new EMCSolver(3, 1.0);
+        solver.setFixedValue(0, 1.0);
+        solver.addRecipe(1, 64, 1.0, new int[]{0}, new int[]{1});
+        solver.addRecipe(2, 1, 1.1, new int[]{0}, new int[]{10});
+        solver.solve();
+
+        assertEquals(1.0, solver.getValue(1), DELTA);
+        assertEquals(11.0, solver.getValue(2), DELTA);
+    }
+
+    /**
+     * Test that fixed values are never replaced by recipes
+     */
+    @Test
+    void testFixedValuesAreKept() {
+        EMCSolver solver = new EMCSolver(2, 1.0);
+        solver.setFixedValue(0, 2.0);
+        solver.setFixedValue(1, 50.0);
+        solver.addRecipe(1, 1, 1.0, new int[]{0}, new int[]{1});
+        solver.solve();
+
+        assertEquals(50.0, solver.getValue(1), DELTA);
+    }
+
+    /**
+     * Test that a very long chain is solved without deep recursion
+     */
+    @Test
+    void testLongChainNoRecursion() {
+        int length = 200_000;
+        EMCSolver solver = new EMCSolver(length, 1.0);
+        solver.setFixedValue(0, 1.0);
+        for (int i = 1; i < length; i++) {
+            solver.addRecipe(i, 1, 1.0, new int[]{i - 1}, new int[]{1});
+        }
+        solver.solve();
+
+        assertEquals(1.0, solver.getValue(length - 1), DELTA);
+    }
+
+    /**
+     * Test that an incremental solve after a recipe change matches a full solve
+     */
+    @Test
+    void testIncrementalMatchesFullSolve() {
+        // 0 = cobblestone (fixed), 1 = stone (smelted), 2 = stone bricks, 3 = stick (fixed), 4 = unrelated
+        EMCSolver before = new EMCSolver(5, 1.0);
+        before.setFixedValue(0, 1.0);
+        before.setFixedValue(3, 4.0);
+        before.addRecipe(1, 1, 1.0, new int[]{0}, new int[]{1});
+        before.addRecipe(2, 4, 1.0, new int[]{1}, new int[]{4});
+        before.addRecipe(4, 1, 1.0, new int[]{3}, new int[]{2});
+        before.solve();
+
+        // Stone now takes two cobblestone; only 1 and 2 depend on it
+        EMCSolver full = buildChangedGraph();
+        full.solve();
+
+        double[] previousValues = new double[5];
+        int[] previousBest = new int[5];
+        for (int node = 0; node < 5; node++) {
+            previousValues[node] = before.getValue(node);
+            previousBest[node] = before.getBestRecipe(node);
+        }
+
+        EMCSolver incremental = buildChangedGraph();
+        incremental.solveIncremental(previousValues, previousBest, new BitSet(), new int[]{1});
+
+        for (int node = 0; node < 5; node++) {
+            assertEquals(full.getValue(node), incremental.getValue(node), DELTA);
+        }
+        assertEquals(2.0, incremental.getValue(2), DELTA);
+        assertEquals(2, incremental.getDirtyNodeCount());
+    }
+
+    /**
+     * Test that an incremental solve picks up nodes added since the previous solve
+     */
+    @Test
+    void testIncrementalNewNode() {
+        EMCSolver before = new EMCSolver(2, 1.0);
+        before.setFixedValue(0, 8.0);
+        before.addRecipe(1, 1, 1.0, new int[]{0}, new int[]{1});
+        before.solve();
+
+        EMCSolver after = new EMCSolver(3, 1.0);
+        after.setFixedValue(0, 8.0);
+        after.addRecipe(1, 1, 1.0, new int[]{0}, new int[]{1});
+        after.addRecipe(2, 1, 1.0, new int[]{1}, new int[]{2});
+        double[] previousValues = {before.getValue(0), before.getValue(1)};
+        int[] previousBest = {-1, before.getBestRecipe(1), -1};
+        after.solveIncremental(previousValues, previousBest, new BitSet(), new int[]{2});
+
+        assertEquals(8.0, after.getValue(1), DELTA);
+        assertEquals(16.0, after.getValue(2), DELTA);
+    }
+
+    private static EMCSolver buildChangedGraph() {
+        EMCSolver solver = new EMCSolver(5, 1.0);
+        solver.setFixedValue(0, 1.0);
+        solver.setFixedValue(3, 4.0);
+        solver.addRecipe(1, 1, 1.0, new int[]{0}, new int[]{2});
+        solver.addRecipe(2, 4, 1.0, new int[]{1}, new int[]{4});
+        solver.addRecipe(4, 1, 1.0, new int[]{3}, new int[]{2});
+        return solver;
+    }
+
+    /**
+     * Test an ingredient group node (one single-input recipe per alternative, as built for
+     * multi-item ingredients): it takes the cheapest alternative, and resolves as soon as
+     * any alternative does
+     * oak planks (8) or birch planks (2 of 3 EMC), group -> 2x stick
+     */
+    @Test
+    void testIngredientGroupTakesCheapestAlternative() {
+        EMCSolver solver = new EMCSolver(5, 1.0);
+        solver.setFixedValue(0, 8.0);                                 // oak planks
+        solver.setFixedValue(1, 3.0);                                 // birch planks
+        solver.addRecipe(3, 1, 1.0, new int[]{0}, new int[]{1});      // group <- oak
+        solver.addRecipe(3, 1, 1.0, new int[]{1}, new int[]{2});      // group <- 2 birch
+        solver.addRecipe(3, 1, 1.0, new int[]{2}, new int[]{1});      // group <- unresolved item
+        solver.addRecipe(4, 4, 1.0, new int[]{3}, new int[]{2});      // 4 sticks from 2 planks
+        solver.solve();
+
+        assertEquals(6.0, solver.getValue(3), DELTA);
+        assertEquals(3.0, solver.getValue(4), DELTA);
+        assertEquals(0.0, solver.getValue(2), DELTA);
+    }
+
+    /**
+     * Test tag inference inside the solve: a recipe-derived member counts towards its tag,
+     * the inferred member then values a recipe, and inferred values do not feed other tags
+     * 0 = ingot A (100), 1 = ore (20), 2 = ingot B (2 ore), 3 = ingot C (tags only),
+     * 4 = block of C (9 ingots), 5 = nugget sharing a tag with C only
+     */
+    @Test
+    void testTagInferenceJoinsRecipePropagation() {
+        EMCSolver solver = buildTaggedGraph(100.0);
+        solver.solve();
+
+        assertEquals(40.0, solver.getValue(2), DELTA);
+        assertEquals(70.0, solver.getValue(3), DELTA);
+        assertTrue(solver.isInferred(3));
+        assertEquals(630.0, solver.getValue(4), DELTA);
+        assertFalse(solver.isInferred(4));
+        assertEquals(0.0, solver.getValue(5), DELTA);
+        assertEquals(1, solver.getInferredNodeCount());
+    }
+
+    /**
+     * Test that an incremental solve re-infers tag members of a changed node
+     */
+    @Test
+    void testIncrementalTagInferenceMatchesFullSolve() {
+        EMCSolver before = buildTaggedGraph(100.0);
+        before.solve();
+
+        double[] previousValues = new double[6];
+        int[] previousBest = new int[6];
+        BitSet previousInferred = new BitSet();
+        for (int node = 0; node < 6; node++) {
+            previousValues[node] = before.getValue(node);
+            previousBest[node] = before.getBestRecipe(node);
+            if (before.isInferred(node)) {
+                previousInferred.set(node);
+            }
+        }
+
+        EMCSolver full = buildTaggedGraph(200.0);
+        full.solve();
+        EMCSolver incremental = buildTaggedGraph(200.0);
+        incremental.solveIncremental(previousValues, previousBest, previousInferred, new int[]{0});
+
+        for (int node = 0; node < 6; node++) {
+            assertEquals(full.getValue(node), incremental.getValue(node), DELTA);
+        }
+        assertEquals(120.0, incremental.getValue(3), DELTA);
+        assertEquals(1080.0, incremental.getValue(4), DELTA);
+    }
+
+    /**
+     * Test that a recipe from an inferred ingredient beats the output's own tag median
+     * 0 = plate (2 dust, tag median 100), 1 = dust (tag median 10), 2 and 3 = fixed tag mates
+     */
+    @Test
+    void testRecipeFromInferredIngredientBeatsTagMedian() {
+        EMCSolver solver = new EMCSolver(4, 1.0);
+        solver.setFixedValue(2, 100.0);
+        solver.setFixedValue(3, 10.0);
+        solver.addRecipe(0, 1, 1.0, new int[]{1}, new int[]{2});
+        solver.addTag(new int[]{0, 2});
+        solver.addTag(new int[]{1, 3});
+        solver.solve();
+
+        assertEquals(10.0, solver.getValue(1), DELTA);
+        assertTrue(solver.isInferred(1));
+        assertEquals(20.0, solver.getValue(0), DELTA);
+        assertFalse(solver.isInferred(0));
+        assertEquals(1, solver.getInferredNodeCount());
+    }
+
+    /**
+     * Test that a solve paused at every deadline check, inference sweeps included,
+     * ends with the same values as an uninterrupted solve
+     * 0 = fixed tag mate, 1..n-1 = tagged chain where only node 1 has no recipe
+     */
+    @Test
+    void testSlicedSolveMatchesFullSolve() {
+        int length = 2_000;
+        EMCSolver full = buildTaggedChain(length);
+        full.solve();
+
+        EMCSolver sliced = buildTaggedChain(length);
+        sliced.startSolve();
+        int slices = 1;
+        while (!sliced.resume(0L)) {
+            slices++;
+        }
+
+        assertTrue(slices > 1);
+        for (int node = 0; node < length; node++) {
+            assertEquals(full.getValue(node), sliced.getValue(node), DELTA);
+            assertEquals(full.isInferred(node), sliced.isInferred(node));
+        }
+        assertEquals(10.0, sliced.getValue(length - 1), DELTA);
+        assertEquals(1, sliced.getInferredNodeCount());
+    }
+
+    private static EMCSolver buildTaggedChain(int length) {
+        EMCSolver solver = new EMCSolver(length, 1.0);
+        solver.setFixedValue(0, 10.0);
+        int[] members = new int[length];
+        for (int node = 0; node < length; node++) {
+            members[node] = node;
+        }
+        for (int node = 2; node < length; node++) {
+            solver.addRecipe(node, 1, 1.0, new int[]{node - 1}, new int[]{1});
+        }
+        solver.addTag(members);
+        return solver;
+    }
+
+    private static EMCSolver buildTaggedGraph(double ingotValue) {
+        EMCSolver solver = new EMCSolver(6, 1.0);
+        solver.setFixedValue(0, ingotValue);
+        solver.setFixedValue(1, 20.0);
+        solver.addRecipe(2, 1, 1.0, new int[]{1}, new int[]{2});
+        solver.addRecipe(4, 1, 1.0, new int[]{3}, new int[]{9});
+        solver.addTag(new int[]{0, 2, 3});
+        solver.addTag(new int[]{3, 5});
+        return solver;
+    }
+}
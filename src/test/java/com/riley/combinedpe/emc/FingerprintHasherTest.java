@@ -0,0 +1,75 @@
+package com.riley.combinedpe.emc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for FingerprintHasher
+ */
+class FingerprintHasherTest {
+
+    /**
+     * Test that the same input always gives the same hash
+     */
+    @Test
+    void testDeterministic() {
+        long a = new FingerprintHasher().putString("minecraft:stick").putInt(4).finish();
+        long b = new FingerprintHasher().putString("minecraft:stick").putInt(4).finish();
+        assertEquals(a, b);
+    }
+
+    /**
+     * Test that strings are length-prefixed, so boundaries matter
+     */
+    @Test
+    void testStringBoundaries() {
+        long a = new FingerprintHasher().putString("ab").putString("c").finish();
+        long b = new FingerprintHasher().putString("a").putString("bc").finish();
+        assertNotEquals(a, b);
+    }
+
+    /**
+     * Test that null and empty strings hash differently
+     */
+    @Test
+    void testNullDiffersFromEmpty() {
+        long a = new FingerprintHasher().putString(null).finish();
+        long b = new FingerprintHasher().putString("").finish();
+        assertNotEquals(a, b);
+    }
+
+    /**
+     * Test that a small config change changes the hash
+     */
+    @Test
+    void testValueChangeChangesHash() {
+        long a = new FingerprintHasher().putDouble(1.0).putString("minecraft:dirt=1").finish();
+        long b = new FingerprintHasher().putDouble(1.1).putString("minecraft:dirt=1").finish();
+        long c = new FingerprintHasher().putDouble(1.0).putString("minecraft:dirt=2").finish();
+        assertNotEquals(a, b);
+        assertNotEquals(a, c);
+    }
+
+    /**
+     * Test that summing mixed entry hashes is independent of entry order
+     */
+    @Test
+    void testSummedEntriesAreOrderIndependent() {
+        long x = new FingerprintHasher().putString("recipe_a").finish();
+        long y = new FingerprintHasher().putString("recipe_b").finish();
+        long z = new FingerprintHasher().putString("recipe_c").finish();
+
+        long forward = FingerprintHasher.mix(x) + FingerprintHasher.mix(y) + FingerprintHasher.mix(z);
+        long backward = FingerprintHasher.mix(z) + FingerprintHasher.mix(y) + FingerprintHasher.mix(x);
+        assertEquals(forward, backward);
+    }
+
+    /**
+     * Test hex formatting is fixed width
+     */
+    @Test
+    void testHexFormat() {
+        assertEquals("0000000000000001", FingerprintHasher.toHex(1L));
+        assertEquals(16, FingerprintHasher.toHex(-1L).length());
+    }
+}
@@ -0,0 +1,115 @@
+package com.riley.combinedpe.emc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ItemRuleSet matching (tag rules need a TagIndex and are not covered here)
+ */
+class ItemRuleSetTest {
+
+    /**
+     * Test that exact IDs match only themselves
+     */
+    @Test
+    void testExactMatch() {
+        ItemRuleSet.Builder builder = new ItemRuleSet.Builder();
+        builder.add("minecraft:dirt", 1);
+        ItemRuleSet rules = builder.build();
+
+        assertEquals(1, rules.match("minecraft:dirt"));
+        assertEquals(ItemRuleSet.NO_MATCH, rules.match("minecraft:dirt_path"));
+    }
+
+    /**
+     * Test that "modid:*" matches every item of the mod
+     */
+    @Test
+    void testNamespaceWildcard() {
+        ItemRuleSet.Builder builder = new ItemRuleSet.Builder();
+        builder.add("mekanism:*", 5);
+        ItemRuleSet rules = builder.build();
+
+        assertEquals(5, rules.match("mekanism:ingot_osmium"));
+        assertEquals(ItemRuleSet.NO_MATCH, rules.match("minecraft:iron_ingot"));
+    }
+
+    /**
+     * Test glob wildcards and that other regex characters are taken literally
+     */
+    @Test
+    void testGlob() {
+        ItemRuleSet.Builder builder = new ItemRuleSet.Builder();
+        builder.add("*:*_ore", 7);
+        builder.add("minecraft:oak_?", 8);
+        builder.add("mod:a.b*", 9);
+        ItemRuleSet rules = builder.build();
+
+        assertEquals(7, rules.match("minecraft:iron_ore"));
+        assertEquals(7, rules.match("create:zinc_ore"));
+        assertEquals(ItemRuleSet.NO_MATCH, rules.match("minecraft:iron_ore_block"));
+        assertEquals(8, rules.match("minecraft:oak_x"));
+        assertEquals(9, rules.match("mod:a.bc"));
+        assertEquals(ItemRuleSet.NO_MATCH, rules.match("mod:axbc"));
+    }
+
+    /**
+     * Test regex rules in slashes
+     */
+    @Test
+    void testRegex() {
+        ItemRuleSet.Builder builder = new ItemRuleSet.Builder();
+        builder.add("/minecraft:.*_(slab|stairs)/", 3);
+        ItemRuleSet rules = builder.build();
+
+        assertEquals(3, rules.match("minecraft:oak_slab"));
+        assertEquals(3, rules.match("minecraft:stone_stairs"));
+        assertEquals(ItemRuleSet.NO_MATCH, rules.match("minecraft:oak_planks"));
+    }
+
+    /**
+     * Test that exact beats glob beats namespace, regardless of entry order
+     */
+    @Test
+    void testSpecificityOrder() {
+        ItemRuleSet.Builder builder = new ItemRuleSet.Builder();
+        builder.add("minecraft:diamond", 8192);
+        builder.add("minecraft:*", 1);
+        builder.add("minecraft:*_ore", 100);
+        ItemRuleSet rules = builder.build();
+
+        assertEquals(8192, rules.match("minecraft:diamond"));
+        assertEquals(100, rules.match("minecraft:gold_ore"));
+        assertEquals(1, rules.match("minecraft:stick"));
+    }
+
+    /**
+     * Test that the later of two matching glob rules wins
+     */
+    @Test
+    void testLaterPatternWins() {
+        ItemRuleSet.Builder builder = new ItemRuleSet.Builder();
+        builder.add("*:*_ore", 1);
+        builder.add("minecraft:*_ore", 2);
+        ItemRuleSet rules = builder.build();
+
+        assertEquals(2, rules.match("minecraft:coal_ore"));
+        assertEquals(1, rules.match("create:zinc_ore"));
+    }
+
+    /**
+     * Test that invalid entries are rejected and recorded
+     */
+    @Test
+    void testInvalidEntries() {
+        ItemRuleSet.Builder builder = new ItemRuleSet.Builder();
+        assertFalse(builder.add("Not An Id", 1));
+        assertFalse(builder.add("/[unclosed/", 1));
+        assertFalse(builder.add("#bad tag", 1));
+        assertTrue(builder.add("minecraft:dirt", 1));
+        ItemRuleSet rules = builder.build();
+
+        assertEquals(3, rules.getInvalidEntries().size());
+        assertEquals(1, rules.getEntries().size());
+    }
+}
@@ -0,0 +1,52 @@
+package com.riley.combinedpe.emc;
+
+import net.minecraft.resources.ResourceLocation;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for RecipeGraphState re-solves after a runtime override
+ *
+ * States are built from plain node IDs, so these tests run without a Minecraft environment.
+ */
+class RecipeGraphStateTest {
+
+    private static final double DELTA = 1e-9;
+
+    /**
+     * Test that an override on an unvalued item values the chain built on it,
+     * and that the whole chain is reported as changed
+     * 0 = unvalued modded ore, 1 = dust (1 ore), 2 = ingot (2 dust), 3 = fixed unrelated item
+     */
+    @Test
+    void testOverrideValuesUnvaluedChain() {
+        Map<ResourceLocation, RecipeEMCCalculator.GraphRecipe> recipes = new HashMap<>();
+        addRecipe(recipes, "dust", 1, 0, 1);
+        addRecipe(recipes, "ingot", 2, 1, 2);
+
+        double[] fixedValues = {0.0, 0.0, 0.0, 64.0};
+        double[] values = {0.0, 0.0, 0.0, 64.0};
+        RecipeGraphState state = new RecipeGraphState(new ItemKeyInterner(), new IngredientGroupInterner(), 4,
+            recipes, Map.of(), fixedValues, values, new ResourceLocation[4], new BitSet());
+
+        RecipeGraphState updated = state.withFixedValue(0, 32.0);
+
+        assertEquals(32.0, updated.getValues()[0], DELTA);
+        assertEquals(32.0, updated.getValues()[1], DELTA);
+        assertEquals(64.0, updated.getValues()[2], DELTA);
+        assertArrayEquals(new int[]{1, 2}, updated.findDerivedChanges(state));
+        assertEquals(0.0, state.getValues()[2], DELTA);
+    }
+
+    private static void addRecipe(Map<ResourceLocation, RecipeEMCCalculator.GraphRecipe> recipes, String name,
+                                  int output, int input, int count) {
+        ResourceLocation id = ResourceLocation.fromNamespaceAndPath("test", name);
+        recipes.put(id, new RecipeEMCCalculator.GraphRecipe(id, ResourceLocation.withDefaultNamespace("crafting"),
+            output, 1, 1.0, new int[]{input}, new int[]{count}));
+    }
+}